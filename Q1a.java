@@ -18,30 +18,207 @@ Example 1:
 Input: k = 1, n = 2 
 Output: 2  */
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
 class Q1a {
+  // With k >= 63 samples every attempt can halve the range, and 2^63 - 1 already covers any long n
+  private static final long MAX_USEFUL_SAMPLES = 63;
+
   // Function to find the minimum number of measurements required
   public static int minMeasurements(int k, int n) {
-      // Create a DP table where dp[i][j] represents the maximum number of temperature levels
-      // that can be checked with i samples and j attempts
-      int[][] dp = new int[k + 1][n + 1];
-      int attempts = 0; // Initialize the number of attempts to zero
-      
-      // Keep increasing the attempts until we can determine the critical temperature level
-      while (dp[k][attempts] < n) {
-          attempts++; // Increment the attempt count
-          
-          // Iterate through all available samples (from 1 to k)
-          for (int i = 1; i <= k; i++) {
-              // If we drop a sample at a certain temperature:
-              // 1. If it breaks, we check below (dp[i-1][attempts-1])
-              // 2. If it doesn't break, we check above (dp[i][attempts-1])
-              // 3. Add 1 for the current attempt to track the test case
-              dp[i][attempts] = dp[i - 1][attempts - 1] + dp[i][attempts - 1] + 1;
+      return (int) minMeasurements((long) k, (long) n);
+  }
+
+  // Long-based solver: binary search on the number of attempts, O(k * log n) time and O(1) memory
+  public static long minMeasurements(long k, long n) {
+      if (n <= 0) return 0; // Nothing to measure
+      if (k <= 0) {
+          throw new IllegalArgumentException("At least one sample is required to measure " + n + " levels.");
+      }
+      return searchAttempts(Math.min(k, MAX_USEFUL_SAMPLES), n, 1);
+  }
+
+  // Batch API: answers queries[q] = {k, n} and returns the minimum measurements for each one.
+  // Queries are processed sorted by (k, n) so the previous answer of the same k is a lower bound for the next.
+  public static long[] minMeasurements(long[][] queries) {
+      long[] answers = new long[queries.length];
+      Integer[] order = new Integer[queries.length];
+      for (int q = 0; q < queries.length; q++) {
+          order[q] = q;
+      }
+      java.util.Arrays.sort(order, (a, b) -> {
+          long ka = Math.min(queries[a][0], MAX_USEFUL_SAMPLES);
+          long kb = Math.min(queries[b][0], MAX_USEFUL_SAMPLES);
+          if (ka != kb) return Long.compare(ka, kb);
+          return Long.compare(queries[a][1], queries[b][1]);
+      });
+
+      long previousK = -1;
+      long previousAnswer = 0;
+      for (int q : order) {
+          long k = Math.min(queries[q][0], MAX_USEFUL_SAMPLES);
+          long n = queries[q][1];
+          if (k != previousK) {
+              previousK = k;
+              previousAnswer = 0;
+          }
+          if (n <= 0) {
+              answers[q] = 0;
+              continue;
+          }
+          if (k <= 0) {
+              throw new IllegalArgumentException("At least one sample is required to measure " + n + " levels.");
+          }
+          // The answer is monotone in n, so the search can start from the previous answer
+          previousAnswer = searchAttempts(k, n, Math.max(1, previousAnswer));
+          answers[q] = previousAnswer;
+      }
+      return answers;
+  }
+
+  // Smallest attempts >= low such that k samples and that many attempts cover n levels
+  private static long searchAttempts(long k, long n, long low) {
+      long high = n; // One sample with n attempts always covers n levels
+      while (low < high) {
+          long mid = low + (high - low) / 2;
+          if (covers(k, mid, n)) {
+              high = mid;
+          } else {
+              low = mid + 1;
+          }
+      }
+      return low;
+  }
+
+  // Checks whether sum_{i=1..k} C(attempts, i) >= n, which is the number of levels
+  // k samples can distinguish with the given attempts. Stops as soon as the sum reaches n.
+  private static boolean covers(long k, long attempts, long n) {
+      long sum = 0;
+      long binomial = 1; // C(attempts, 0)
+      for (long i = 1; i <= k && i <= attempts; i++) {
+          // C(attempts, i) = C(attempts, i - 1) * (attempts - i + 1) / i, divided first to stay exact
+          long g = gcd(binomial, i);
+          long factor = (attempts - i + 1) / (i / g);
+          long reduced = binomial / g;
+          if (reduced > n / factor) return true; // The next term alone already exceeds n
+          binomial = reduced * factor;
+          if (binomial >= n - sum) return true;
+          sum += binomial;
+      }
+      return false;
+  }
+
+  private static long gcd(long a, long b) {
+      while (b != 0) {
+          long t = a % b;
+          a = b;
+          b = t;
+      }
+      return a;
+  }
+
+  // Precomputed coverage table: coverage[i][attempts] is the number of levels i samples can check
+  // with that many attempts, saturating at Long.MAX_VALUE. Answers (k, n) with a binary search
+  // over the column of k and falls back to the solver when the query lies outside the table.
+  static class MeasurementTable {
+      private static final int MAGIC = 0x51314154; // "Q1AT"
+      private static final int HEADER_BYTES = 16;  // magic, maxSamples, maxAttempts, padding
+
+      private final int maxSamples;
+      private final int maxAttempts;
+      private final LongBuffer coverage; // Row-major: row i holds attempts 0..maxAttempts
+
+      private MeasurementTable(int maxSamples, int maxAttempts, LongBuffer coverage) {
+          this.maxSamples = maxSamples;
+          this.maxAttempts = maxAttempts;
+          this.coverage = coverage;
+      }
+
+      // Builds the table one row at a time from the previous row
+      public static MeasurementTable build(int maxSamples, int maxAttempts) {
+          if (maxSamples < 1 || maxAttempts < 1) {
+              throw new IllegalArgumentException("Table needs at least one sample and one attempt.");
+          }
+          int width = maxAttempts + 1;
+          long[] cells = new long[(maxSamples + 1) * width]; // Row 0 (no samples) stays zero
+          for (int i = 1; i <= maxSamples; i++) {
+              int row = i * width;
+              int previousRow = row - width;
+              for (int t = 1; t <= maxAttempts; t++) {
+                  // dp[i][t] = dp[i-1][t-1] + dp[i][t-1] + 1, saturating instead of overflowing
+                  long below = cells[previousRow + t - 1];
+                  long above = cells[row + t - 1];
+                  long value = below + above + 1;
+                  cells[row + t] = (value < 0 || value < above) ? Long.MAX_VALUE : value;
+              }
+          }
+          return new MeasurementTable(maxSamples, maxAttempts, LongBuffer.wrap(cells));
+      }
+
+      // Minimum measurements for k samples and n levels
+      public long minMeasurements(long k, long n) {
+          if (n <= 0) return 0;
+          if (k <= 0 || k > maxSamples || cell(k, maxAttempts) < n) {
+              return Q1a.minMeasurements(k, n); // Outside the table
+          }
+          // First attempts count in column k whose coverage reaches n
+          int low = 1;
+          int high = maxAttempts;
+          while (low < high) {
+              int mid = (low + high) >>> 1;
+              if (cell(k, mid) >= n) {
+                  high = mid;
+              } else {
+                  low = mid + 1;
+              }
+          }
+          return low;
+      }
+
+      private long cell(long k, int attempts) {
+          return coverage.get((int) k * (maxAttempts + 1) + attempts);
+      }
+
+      // Writes the table to a file through a memory mapping
+      public void save(Path file) throws IOException {
+          long bytes = HEADER_BYTES + (long) coverage.capacity() * Long.BYTES;
+          try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                  StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+              MappedByteBuffer out = channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+              out.putInt(MAGIC).putInt(maxSamples).putInt(maxAttempts).putInt(0);
+              LongBuffer cells = out.asLongBuffer();
+              for (int i = 0; i < coverage.capacity(); i++) {
+                  cells.put(i, coverage.get(i));
+              }
+              out.force();
+          }
+      }
+
+      // Maps a saved table without copying it; lookups read straight from the mapping
+      public static MeasurementTable load(Path file) throws IOException {
+          try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+              MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+              if (in.remaining() < HEADER_BYTES || in.getInt() != MAGIC) {
+                  throw new IOException("Not a measurement table: " + file);
+              }
+              int maxSamples = in.getInt();
+              int maxAttempts = in.getInt();
+              in.getInt(); // Padding keeps the cells 8-byte aligned
+              long expected = (long) (maxSamples + 1) * (maxAttempts + 1);
+              ByteBuffer body = in.slice();
+              if (body.remaining() != expected * Long.BYTES) {
+                  throw new IOException("Truncated measurement table: " + file);
+              }
+              return new MeasurementTable(maxSamples, maxAttempts, body.asLongBuffer());
           }
       }
-      
-      // Return the minimum number of attempts required to find the critical temperature
-      return attempts;
   }
   
   public static void main(String[] args) {
@@ -60,5 +237,87 @@ class Q1a {
           // Print the result for the current test case
           System.out.println("For k = " + k + ", n = " + n + " -> Minimum measurements required: " + minMeasurements(k, n));
       }
+
+      // Large inputs handled by the long-based solver, answered together through the batch API
+      long[][] queries = {{2, 1_000_000_000L}, {1, 1_000_000_000_000_000_000L}, {10, 1_000_000_000_000_000_000L}};
+      long[] answers = minMeasurements(queries);
+      for (int q = 0; q < queries.length; q++) {
+          System.out.println("For k = " + queries[q][0] + ", n = " + queries[q][1] + " -> Minimum measurements required: " + answers[q]);
+      }
+
+      // Precomputed table, saved and mapped back in, answering the same queries
+      MeasurementTable table = MeasurementTable.build(64, 4096);
+      try {
+          Path file = Files.createTempFile("measurements", ".tbl");
+          try {
+              table.save(file);
+              MeasurementTable loaded = MeasurementTable.load(file);
+              for (int q = 0; q < queries.length; q++) {
+                  System.out.println("Loaded table: k = " + queries[q][0] + ", n = " + queries[q][1] + " -> "
+                          + loaded.minMeasurements(queries[q][0], queries[q][1]));
+              }
+          } finally {
+              Files.delete(file);
+          }
+      } catch (IOException e) {
+          System.err.println("Error saving measurement table: " + e.getMessage());
+      }
+
+      // Run with "benchmark" to compare the table against the solver on random queries
+      if (args.length > 0 && args[0].equals("benchmark")) {
+          benchmark(table);
+      }
+  }
+
+  // No JMH here, so each path is warmed up before timing, the two paths alternate which goes
+  // first, and the fastest round of each is reported
+  static final int WARMUP_ROUNDS = 5;
+  static final int TIMED_ROUNDS = 10;
+
+  static void benchmark(MeasurementTable table) {
+      java.util.Random random = new java.util.Random(42);
+      long[] ks = new long[1_000_000];
+      long[] ns = new long[ks.length];
+      for (int q = 0; q < ks.length; q++) {
+          ks[q] = 2 + random.nextInt(63);
+          ns[q] = 1 + (random.nextLong() >>> 1) % 1_000_000_000_000L;
+      }
+      long solverNanos = Long.MAX_VALUE;
+      long tableNanos = Long.MAX_VALUE;
+      boolean mismatch = false;
+      for (int round = 0; round < WARMUP_ROUNDS + TIMED_ROUNDS; round++) {
+          boolean solverFirst = round % 2 == 0;
+          long[] solver = new long[2];
+          long[] fromTable = new long[2];
+          for (int pass = 0; pass < 2; pass++) {
+              long start = System.nanoTime();
+              if ((pass == 0) == solverFirst) {
+                  solver[0] = solverPass(ks, ns);
+                  solver[1] = System.nanoTime() - start;
+              } else {
+                  fromTable[0] = tablePass(table, ks, ns);
+                  fromTable[1] = System.nanoTime() - start;
+              }
+          }
+          mismatch |= solver[0] != fromTable[0];
+          if (round >= WARMUP_ROUNDS) {
+              solverNanos = Math.min(solverNanos, solver[1]);
+              tableNanos = Math.min(tableNanos, fromTable[1]);
+          }
+      }
+      System.out.println("Solver: " + solverNanos / ks.length + " ns/query, table: " + tableNanos / ks.length
+              + " ns/query (best of " + TIMED_ROUNDS + " rounds)" + (mismatch ? " (MISMATCH)" : ""));
+  }
+
+  static long solverPass(long[] ks, long[] ns) {
+      long checksum = 0;
+      for (int q = 0; q < ks.length; q++) checksum += minMeasurements(ks[q], ns[q]);
+      return checksum;
+  }
+
+  static long tablePass(MeasurementTable table, long[] ks, long[] ns) {
+      long checksum = 0;
+      for (int q = 0; q < ks.length; q++) checksum += table.minMeasurements(ks[q], ns[q]);
+      return checksum;
   }
 }
@@ -24,34 +24,247 @@ Output: 0
 Explanation: The 6 smallest products are: - returns1 [0] * returns2 [1] = (-4) * 4 = -16 - returns1 [0] * returns2 [0] = (-4) * 2 = -8 - returns1 [1] * returns2 [1] = (-2) * 4 = -8 - returns1 [1] * returns2 [0] = (-2) * 2 = -4 - returns1 [2] * returns2 [0] = 0 * 2 = 0 - returns1 [2] * returns2 [1] = 0 * 4 = 0 
 The 6th smallest investment is 0. */
 
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
 
 public class Q1b {
-    // Method to find the kth lowest combined return
-    public static int kthLowestCombinedReturn(int[] returns1, int[] returns2, int k) {
-        // Create a list to store the products of pairs
-        ArrayList<Integer> products = new ArrayList<>();
-
-        // Loop through each number in returns1
-        for (int num1 : returns1) {
-            // Loop through each number in returns2
-            for (int num2 : returns2) {
-                // Multiply the numbers and add the result to the products list
-                products.add(num1 * num2);
-            }
+    // Method to find the kth lowest combined return.
+    // Binary searches the product value range instead of materializing every pair:
+    // O((m + n) * log(range)) time and O(1) extra memory. Products are computed in long.
+    public static long kthLowestCombinedReturn(int[] returns1, int[] returns2, long k) {
+        long totalProducts = (long) returns1.length * returns2.length;
+
+        if (k < 1) {
+            throw new IllegalArgumentException("k must be at least 1.");
         }
 
         // Check if there are enough products
-        if (products.size() < k) {
+        if (totalProducts < k) {
             throw new IllegalArgumentException("k is greater than the total number of products.");
         }
 
-        // Sort the products list to arrange them in increasing order
-        Collections.sort(products);
+        // The smallest and largest products are always formed by the ends of the sorted arrays
+        long first1 = returns1[0], last1 = returns1[returns1.length - 1];
+        long first2 = returns2[0], last2 = returns2[returns2.length - 1];
+        long low = Math.min(Math.min(first1 * first2, first1 * last2), Math.min(last1 * first2, last1 * last2));
+        long high = Math.max(Math.max(first1 * first2, first1 * last2), Math.max(last1 * first2, last1 * last2));
+
+        // Find the smallest value x such that at least k products are <= x
+        while (low < high) {
+            long mid = (low + high) >> 1; // Floor of the midpoint, also for negative values
+            if (countAtMost(returns1, returns2, mid) >= k) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+
+    // Counts pairs with returns1[i] * returns2[j] <= x in O(m + n).
+    // returns1 is split into negative, zero and positive segments; within each segment the
+    // matching part of returns2 is a prefix or suffix whose length changes monotonically,
+    // so a single pointer per segment is enough when the segment is walked in the right direction.
+    static long countAtMost(int[] returns1, int[] returns2, long x) {
+        int m = returns1.length;
+        int n = returns2.length;
+
+        // Segment boundaries: [0, zeroStart) negative, [zeroStart, positiveStart) zero, [positiveStart, m) positive
+        int zeroStart = 0;
+        while (zeroStart < m && returns1[zeroStart] < 0) zeroStart++;
+        int positiveStart = zeroStart;
+        while (positiveStart < m && returns1[positiveStart] == 0) positiveStart++;
+
+        long count = 0;
+
+        // Zeros: every product is 0
+        if (x >= 0) {
+            count += (long) (positiveStart - zeroStart) * n;
+        }
+
+        // Positive a: a * b <= x holds for a prefix of returns2. The prefix grows while walking
+        // a from large to small when x >= 0, and from small to large when x < 0.
+        int j = 0;
+        for (int step = 0; step < m - positiveStart; step++) {
+            long a = returns1[x >= 0 ? m - 1 - step : positiveStart + step];
+            while (j < n && a * returns2[j] <= x) j++;
+            count += j;
+        }
+
+        // Negative a: a * b <= x holds for a suffix of returns2. The suffix grows while walking
+        // a from most negative upwards when x >= 0, and from closest to zero downwards when x < 0.
+        j = n - 1;
+        for (int step = 0; step < zeroStart; step++) {
+            long a = returns1[x >= 0 ? step : zeroStart - 1 - step];
+            while (j >= 0 && a * returns2[j] <= x) j--;
+            count += n - 1 - j;
+        }
 
-        // Return the k-th smallest product (index k-1 because lists are 0-indexed)
-        return products.get(k - 1);
+        return count;
+    }
+
+    // Returns every combined return in ascending order, lazily.
+    // Consumers can stop after any prefix; producing the first k values costs O(k log k).
+    public static PrimitiveIterator.OfLong lowestCombinedReturns(int[] returns1, int[] returns2) {
+        return new CombinedReturnIterator(returns1, returns2);
+    }
+
+    // Frontier-expansion iterator over the sorted products.
+    // Row i holds returns1[i] * returns2[j]; it is ascending in j when returns1[i] >= 0 and
+    // descending otherwise, so each row is walked from its smallest end. Inside each sign
+    // segment of returns1 the row heads are ordered too, so the next row of a segment is only
+    // added once the head of the previous row is taken. The heap therefore never holds more
+    // than O(min(k, m)) candidates after k values.
+    static class CombinedReturnIterator implements PrimitiveIterator.OfLong {
+        private final int[] returns1;
+        private final int[] returns2;
+
+        // Binary min-heap stored as parallel primitive arrays keyed on (product, i, j)
+        private long[] heapProduct = new long[8];
+        private int[] heapRow = new int[8];
+        private int[] heapColumn = new int[8];
+        private int size = 0;
+
+        CombinedReturnIterator(int[] returns1, int[] returns2) {
+            this.returns1 = returns1;
+            this.returns2 = returns2;
+            if (returns1.length == 0 || returns2.length == 0) return;
+
+            // Segment boundaries: [0, zeroStart) negative, [zeroStart, positiveStart) zero, [positiveStart, m) positive
+            int m = returns1.length;
+            int zeroStart = 0;
+            while (zeroStart < m && returns1[zeroStart] < 0) zeroStart++;
+            int positiveStart = zeroStart;
+            while (positiveStart < m && returns1[positiveStart] == 0) positiveStart++;
+
+            // Seed the frontier with the row holding the smallest head of each segment
+            if (zeroStart > 0) pushHead(firstRow(0, zeroStart));
+            if (positiveStart > zeroStart) pushHead(zeroStart);
+            if (m > positiveStart) pushHead(firstRow(positiveStart, m));
+        }
+
+        @Override
+        public boolean hasNext() {
+            return size > 0;
+        }
+
+        @Override
+        public long nextLong() {
+            if (size == 0) {
+                throw new NoSuchElementException("All combined returns have been produced.");
+            }
+            long product = heapProduct[0];
+            int i = heapRow[0];
+            int j = heapColumn[0];
+            removeTop();
+
+            // Continue along the row
+            int step = returns1[i] >= 0 ? 1 : -1;
+            int nextColumn = j + step;
+            if (nextColumn >= 0 && nextColumn < returns2.length) {
+                push(i, nextColumn);
+            }
+
+            // Taking a row head unlocks the next row of the same segment
+            if (j == headColumn(i)) {
+                int nextRow = nextRow(i);
+                if (nextRow >= 0) pushHead(nextRow);
+            }
+            return product;
+        }
+
+        // Column holding the smallest product of row i
+        private int headColumn(int i) {
+            return returns1[i] >= 0 ? 0 : returns2.length - 1;
+        }
+
+        // Row whose head is smallest inside the segment [from, to)
+        private int firstRow(int from, int to) {
+            return rowsAscend(from) ? from : to - 1;
+        }
+
+        // Row whose head follows row i inside its segment, or -1 when the segment is exhausted
+        private int nextRow(int i) {
+            long a = returns1[i];
+            if (a == 0) {
+                return i + 1 < returns1.length && returns1[i + 1] == 0 ? i + 1 : -1;
+            }
+            int candidate = rowsAscend(i) ? i + 1 : i - 1;
+            if (candidate < 0 || candidate >= returns1.length) return -1;
+            long b = returns1[candidate];
+            return (a > 0 && b > 0) || (a < 0 && b < 0) ? candidate : -1;
+        }
+
+        // Whether row heads grow with the row index inside the segment containing row i
+        private boolean rowsAscend(int i) {
+            return returns2[headColumn(i)] >= 0;
+        }
+
+        private void pushHead(int i) {
+            push(i, headColumn(i));
+        }
+
+        private void push(int i, int j) {
+            if (size == heapProduct.length) {
+                int capacity = size * 2;
+                heapProduct = java.util.Arrays.copyOf(heapProduct, capacity);
+                heapRow = java.util.Arrays.copyOf(heapRow, capacity);
+                heapColumn = java.util.Arrays.copyOf(heapColumn, capacity);
+            }
+            long product = (long) returns1[i] * returns2[j];
+
+            // Sift up
+            int child = size++;
+            while (child > 0) {
+                int parent = (child - 1) >>> 1;
+                if (!less(product, i, j, parent)) break;
+                move(parent, child);
+                child = parent;
+            }
+            heapProduct[child] = product;
+            heapRow[child] = i;
+            heapColumn[child] = j;
+        }
+
+        private void removeTop() {
+            size--;
+            if (size == 0) return;
+            long product = heapProduct[size];
+            int i = heapRow[size];
+            int j = heapColumn[size];
+
+            // Sift down
+            int parent = 0;
+            while (true) {
+                int child = 2 * parent + 1;
+                if (child >= size) break;
+                if (child + 1 < size && less(heapProduct[child + 1], heapRow[child + 1], heapColumn[child + 1], child)) {
+                    child++;
+                }
+                if (!less(heapProduct[child], heapRow[child], heapColumn[child], product, i, j)) break;
+                move(child, parent);
+                parent = child;
+            }
+            heapProduct[parent] = product;
+            heapRow[parent] = i;
+            heapColumn[parent] = j;
+        }
+
+        private boolean less(long product, int i, int j, int slot) {
+            return less(product, i, j, heapProduct[slot], heapRow[slot], heapColumn[slot]);
+        }
+
+        private static boolean less(long product1, int i1, int j1, long product2, int i2, int j2) {
+            if (product1 != product2) return product1 < product2;
+            if (i1 != i2) return i1 < i2;
+            return j1 < j2;
+        }
+
+        private void move(int from, int to) {
+            heapProduct[to] = heapProduct[from];
+            heapRow[to] = heapRow[from];
+            heapColumn[to] = heapColumn[from];
+        }
     }
 
     public static void main(String[] args) {
@@ -66,6 +279,14 @@ public class Q1b {
         int k2 = 6;
         System.out.println(kthLowestCombinedReturn(return3, return4, k2)); 
 
+        // The 6 lowest combined returns in order, produced lazily
+        PrimitiveIterator.OfLong lowest = lowestCombinedReturns(return3, return4);
+        StringBuilder prefix = new StringBuilder();
+        for (int i = 0; i < k2 && lowest.hasNext(); i++) {
+            prefix.append(i == 0 ? "" : ", ").append(lowest.nextLong());
+        }
+        System.out.println("[" + prefix + "]");  // Output: [-16, -8, -8, -4, 0, 0]
+
        
     }
 }
@@ -19,41 +19,185 @@ Output: 4
 Explanation: You can allocate to the first, second and third employee with 1, 2, 1 rewards respectively. 
 The third employee gets 1 rewards because it satisfies the above two conditions.  */
 
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
 public class Q2a {
+  // Below this many ratings a chunk is not split any further
+  private static final int PARALLEL_THRESHOLD = 1 << 16;
+
+  // Size of each memory-mapped window over a ratings file (a multiple of Integer.BYTES)
+  private static final long WINDOW_BYTES = 1L << 26;
+
   // Method to calculate the minimum number of rewards needed
-  public static int minRewards(int[] ratings) {
-      int n = ratings.length;
-      if (n == 0) return 0;
-      
-      // Create an array to store the rewards
-      int[] rewards = new int[n];
-      
-      // Initially assign one reward to each employee
-      for (int i = 0; i < n; i++) {
-          rewards[i] = 1;
+  public static long minRewards(int[] ratings) {
+      return minRewards(ratings, 0, ratings.length);
+  }
+
+  // Single pass over ratings[from, to) with O(1) extra memory
+  static long minRewards(int[] ratings, int from, int to) {
+      RewardRun run = new RewardRun();
+      for (int i = from; i < to; i++) {
+          run.add(ratings[i]);
       }
+      return run.totalRewards;
+  }
 
-      // First pass: traverse from left to right
-      for (int i = 1; i < n; i++) {
-          if (ratings[i] > ratings[i - 1]) {
-              rewards[i] = rewards[i - 1] + 1;
+  // Streaming version: reads a file of little-endian int32 ratings through memory-mapped
+  // windows, so only the O(1) state of RewardRun is carried between windows.
+  public static long minRewards(Path ratingsFile) throws IOException {
+      try (FileChannel input = FileChannel.open(ratingsFile, StandardOpenOption.READ)) {
+          long bytes = input.size() / Integer.BYTES * Integer.BYTES;
+          RewardRun run = new RewardRun();
+          for (long offset = 0; offset < bytes; offset += WINDOW_BYTES) {
+              IntBuffer window = mapWindow(input, FileChannel.MapMode.READ_ONLY, offset, bytes);
+              for (int i = 0; i < window.limit(); i++) {
+                  run.add(window.get(i));
+              }
           }
+          return run.totalRewards;
       }
+  }
 
-      // Second pass: traverse from right to left
-      for (int i = n - 2; i >= 0; i--) {
-          if (ratings[i] > ratings[i + 1]) {
-              rewards[i] = Math.max(rewards[i], rewards[i + 1] + 1);
+  // Writes the reward of every employee to rewardsFile as little-endian int32 values and
+  // returns the total. The forward pass stores the left-to-right rewards in the output
+  // mapping, and the backward pass raises them where the right-hand neighbour requires it.
+  public static long minRewards(Path ratingsFile, Path rewardsFile) throws IOException {
+      try (FileChannel input = FileChannel.open(ratingsFile, StandardOpenOption.READ);
+           FileChannel output = FileChannel.open(rewardsFile, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                   StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+          long bytes = input.size() / Integer.BYTES * Integer.BYTES;
+
+          // First pass: traverse from left to right
+          int previousRating = 0;
+          int previousReward = 0;
+          for (long offset = 0; offset < bytes; offset += WINDOW_BYTES) {
+              IntBuffer ratings = mapWindow(input, FileChannel.MapMode.READ_ONLY, offset, bytes);
+              IntBuffer rewards = mapWindow(output, FileChannel.MapMode.READ_WRITE, offset, bytes);
+              for (int i = 0; i < ratings.limit(); i++) {
+                  int rating = ratings.get(i);
+                  int reward = (offset > 0 || i > 0) && rating > previousRating ? previousReward + 1 : 1;
+                  rewards.put(i, reward);
+                  previousRating = rating;
+                  previousReward = reward;
+              }
           }
+
+          // Second pass: traverse from right to left and sum the final rewards
+          long totalRewards = 0;
+          long lastWindow = bytes == 0 ? 0 : (bytes - 1) / WINDOW_BYTES * WINDOW_BYTES;
+          int rightReward = 0;
+          for (long offset = lastWindow; offset >= 0 && bytes > 0; offset -= WINDOW_BYTES) {
+              IntBuffer ratings = mapWindow(input, FileChannel.MapMode.READ_ONLY, offset, bytes);
+              IntBuffer rewards = mapWindow(output, FileChannel.MapMode.READ_WRITE, offset, bytes);
+              boolean lastEmployee = offset == lastWindow;
+              for (int i = ratings.limit() - 1; i >= 0; i--) {
+                  int rating = ratings.get(i);
+                  rightReward = !(lastEmployee && i == ratings.limit() - 1) && rating > previousRating ? rightReward + 1 : 1;
+                  int reward = Math.max(rewards.get(i), rightReward);
+                  rewards.put(i, reward);
+                  totalRewards += reward;
+                  previousRating = rating;
+              }
+          }
+          return totalRewards;
       }
+  }
+
+  private static IntBuffer mapWindow(FileChannel channel, FileChannel.MapMode mode, long offset, long bytes)
+          throws IOException {
+      long length = Math.min(WINDOW_BYTES, bytes - offset);
+      return channel.map(mode, offset, length).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+  }
 
-      // Calculate the total rewards needed
-      int totalRewards = 0;
-      for (int reward : rewards) {
-          totalRewards += reward;
+  // Slope-counting state for a stream of ratings.
+  // Tracks the length of the current up-run and down-run: a down-run of length d costs
+  // 1 + 2 + ... + d, and the peak before it is raised only when d catches up with its up-run.
+  private static class RewardRun {
+      long totalRewards = 0;
+      long up = 0;   // Length of the current strictly increasing run
+      long down = 0; // Length of the current strictly decreasing run
+      long peak = 0; // Length of the up-run that ended at the last peak
+      int previous;  // Rating of the previous employee
+
+      void add(int rating) {
+          if (totalRewards == 0) {
+              totalRewards = 1; // The first employee gets one reward
+          } else if (rating > previous) {
+              up++;
+              peak = up;
+              down = 0;
+              totalRewards += up + 1;
+          } else if (rating == previous) {
+              up = 0;
+              down = 0;
+              peak = 0;
+              totalRewards += 1;
+          } else {
+              up = 0;
+              down++;
+              // Every employee in the down-run gets one more reward; the peak only when needed
+              totalRewards += down + (peak >= down ? 0 : 1);
+          }
+          previous = rating;
       }
+  }
 
-      return totalRewards;
+  // Parallel mode: splits the ratings at local minima and sums the chunks in a fork-join pool.
+  // A local minimum always gets exactly one reward and separates the rewards on its two sides,
+  // so it is shared by both chunks and subtracted once when they are combined.
+  public static long minRewardsParallel(int[] ratings) {
+      return ForkJoinPool.commonPool().invoke(new RewardsTask(ratings, 0, ratings.length));
+  }
+
+  private static class RewardsTask extends RecursiveTask<Long> {
+      private static final long serialVersionUID = 1L;
+
+      private final int[] ratings;
+      private final int from, to;
+
+      RewardsTask(int[] ratings, int from, int to) {
+          this.ratings = ratings;
+          this.from = from;
+          this.to = to;
+      }
+
+      @Override
+      protected Long compute() {
+          if (to - from <= PARALLEL_THRESHOLD) {
+              return minRewards(ratings, from, to);
+          }
+          int cut = findLocalMinimum(from + (to - from) / 2);
+          if (cut < 0) {
+              return minRewards(ratings, from, to); // Fully monotone range, nothing to split at
+          }
+          RewardsTask left = new RewardsTask(ratings, from, cut + 1);
+          RewardsTask right = new RewardsTask(ratings, cut, to);
+          left.fork();
+          long rightRewards = right.compute();
+          return left.join() + rightRewards - 1; // The cut is counted in both chunks
+      }
+
+      // Nearest index at or after start (then before it) that is a local minimum strictly inside the range
+      private int findLocalMinimum(int start) {
+          for (int i = start; i < to - 1; i++) {
+              if (isLocalMinimum(i)) return i;
+          }
+          for (int i = start - 1; i > from; i--) {
+              if (isLocalMinimum(i)) return i;
+          }
+          return -1;
+      }
+
+      private boolean isLocalMinimum(int i) {
+          return ratings[i] <= ratings[i - 1] && ratings[i] <= ratings[i + 1];
+      }
   }
 
   public static void main(String[] args) {
@@ -64,5 +208,13 @@ public class Q2a {
       // Example 2
       int[] ratings2 = {1, 2, 2};
       System.out.println(minRewards(ratings2));  // Output: 4
+
+      // Large input in parallel mode
+      int[] ratings3 = new int[10_000_000];
+      java.util.Random random = new java.util.Random(1);
+      for (int i = 0; i < ratings3.length; i++) {
+          ratings3[i] = random.nextInt(100);
+      }
+      System.out.println(minRewards(ratings3) == minRewardsParallel(ratings3));  // Output: true
   }
 }
@@ -19,38 +19,483 @@ Explanation: Consider index 0 and index 3. The value of | x_coords [i]- x_coords
 y_coords [j]| is 1, which is the smallest value we can achieve.  */
 
 public class Q2b {
-  // Method to find the lexicographically smallest pair of points with the smallest distance
+  // Method to find the lexicographically smallest pair of points with the smallest distance.
+  // Rotating each point to (x + y, x - y) turns the Manhattan distance into the Chebyshev
+  // distance max(|du|, |dv|), which a divide-and-conquer closest-pair search handles in O(n log n).
   public static int[] closestPair(int[] x_coords, int[] y_coords) {
-      // Initialize variables to track the minimum distance and the closest pair of points
-      int minDistance = Integer.MAX_VALUE;
+      int n = x_coords.length;
       int[] closestPair = new int[2]; // To store the indices of the closest pair
+      if (n < 2) return closestPair;
 
-      // Loop through each pair of points
-      for (int i = 0; i < x_coords.length; i++) {
-          for (int j = i + 1; j < x_coords.length; j++) { // j starts from i+1 to avoid duplicate pairs
-              // Calculate the Manhattan distance between points (i, j)
-              int distance = Math.abs(x_coords[i] - x_coords[j]) + Math.abs(y_coords[i] - y_coords[j]);
-
-              // If the distance is smaller than the current minimum, update the minimum distance
-              // Also update the closest pair of points
-              if (distance < minDistance) {
-                  minDistance = distance;
-                  closestPair[0] = i;  // Index of the first point in the pair
-                  closestPair[1] = j;  // Index of the second point in the pair
+      // Rotated coordinates, computed in long so they cannot overflow
+      long[] u = new long[n];
+      long[] v = new long[n];
+      for (int i = 0; i < n; i++) {
+          u[i] = (long) x_coords[i] + y_coords[i];
+          v[i] = (long) x_coords[i] - y_coords[i];
+      }
+
+      // Point indices sorted by (u, v); the sort is stable, so equal points stay in index order
+      int[] order = new int[n];
+      for (int i = 0; i < n; i++) {
+          order[i] = i;
+      }
+      int[] buffer = new int[n];
+      sortByKeys(order, buffer, u, v, 0, n);
+
+      // Duplicate points are at distance 0. Within a run of equal points the two smallest
+      // indices form its best pair, and the best pair overall is the smallest of those.
+      boolean duplicates = false;
+      for (int start = 0, end; start < n; start = end) {
+          end = start + 1;
+          while (end < n && u[order[end]] == u[order[start]] && v[order[end]] == v[order[start]]) end++;
+          if (end - start >= 2 && (!duplicates || order[start] < closestPair[0])) {
+              duplicates = true;
+              closestPair[0] = order[start];
+              closestPair[1] = order[start + 1];
+          }
+      }
+      if (duplicates) return closestPair;
+
+      // All points are distinct: every pair at the minimum distance is compared by the search
+      ClosestPairSearch search = new ClosestPairSearch(u, v, order, buffer);
+      search.run(0, n);
+      closestPair[0] = search.bestI;
+      closestPair[1] = search.bestJ;
+
+      // Return the closest pair of points
+      return closestPair;
+  }
+
+  // Divide-and-conquer over points sorted by u. Each call leaves its range sorted by v so the
+  // strip around the split can be scanned in v order. Comparisons include pairs at exactly the
+  // current best distance, so ties are resolved lexicographically like the original double loop.
+  private static class ClosestPairSearch {
+      private final long[] u, v;
+      private final int[] order, buffer;
+      long bestDistance = Long.MAX_VALUE;
+      int bestI, bestJ;
+
+      ClosestPairSearch(long[] u, long[] v, int[] order, int[] buffer) {
+          this.u = u;
+          this.v = v;
+          this.order = order;
+          this.buffer = buffer;
+      }
+
+      void run(int from, int to) {
+          if (to - from <= 3) {
+              // Small range: compare every pair, then sort by v
+              for (int a = from; a < to; a++) {
+                  for (int b = a + 1; b < to; b++) {
+                      consider(order[a], order[b]);
+                  }
+              }
+              sortByKeys(order, buffer, v, u, from, to);
+              return;
+          }
+
+          int mid = (from + to) >>> 1;
+          long splitU = u[order[mid]];
+          run(from, mid);
+          run(mid, to);
+          merge(order, buffer, v, u, from, mid, to);
+
+          // Points close enough to the split line, in v order
+          int stripSize = 0;
+          for (int a = from; a < to; a++) {
+              if (Math.abs(u[order[a]] - splitU) <= bestDistance) {
+                  buffer[stripSize++] = order[a];
+              }
+          }
+          for (int a = 0; a < stripSize; a++) {
+              for (int b = a + 1; b < stripSize && v[buffer[b]] - v[buffer[a]] <= bestDistance; b++) {
+                  consider(buffer[a], buffer[b]);
+              }
+          }
+      }
+
+      private void consider(int p, int q) {
+          long distance = Math.max(Math.abs(u[p] - u[q]), Math.abs(v[p] - v[q]));
+          int i = Math.min(p, q);
+          int j = Math.max(p, q);
+          if (distance < bestDistance || (distance == bestDistance && (i < bestI || (i == bestI && j < bestJ)))) {
+              bestDistance = distance;
+              bestI = i;
+              bestJ = j;
+          }
+      }
+  }
+
+  // Stable merge sort of order[from, to) by (primary, secondary)
+  private static void sortByKeys(int[] order, int[] buffer, long[] primary, long[] secondary, int from, int to) {
+      if (to - from < 2) return;
+      int mid = (from + to) >>> 1;
+      sortByKeys(order, buffer, primary, secondary, from, mid);
+      sortByKeys(order, buffer, primary, secondary, mid, to);
+      merge(order, buffer, primary, secondary, from, mid, to);
+  }
+
+  private static void merge(int[] order, int[] buffer, long[] primary, long[] secondary, int from, int mid, int to) {
+      int a = from, b = mid, k = from;
+      while (a < mid && b < to) {
+          int p = order[a], q = order[b];
+          boolean takeRight = primary[q] < primary[p] || (primary[q] == primary[p] && secondary[q] < secondary[p]);
+          buffer[k++] = takeRight ? order[b++] : order[a++];
+      }
+      while (a < mid) buffer[k++] = order[a++];
+      while (b < to) buffer[k++] = order[b++];
+      System.arraycopy(buffer, from, order, from, to - from);
+  }
+
+  // Reusable spatial index over a point set for repeated queries.
+  // Points are stored in rotated (u, v) = (x + y, x - y) space, where a Manhattan ball is a square,
+  // and kept in a bucket k-d tree held in flat arrays. A leaf holds up to LEAF_SIZE points in a
+  // linked list threaded through next[], in index order, and splits at the median of its wider
+  // side when it overflows, so dense clusters get finer cells wherever they appear. Appending a
+  // point only descends one path; a subtree that has doubled since it was built and become
+  // lopsided is rebuilt around medians (scapegoat style), so queries stay logarithmic however
+  // the points arrive. Identical points always share a leaf. Ties are broken by the smallest
+  // index, like closestPair.
+  static class ManhattanPointIndex {
+      private static final int NONE = -1;
+      private static final int LEAF_SIZE = 16;
+      private static final long MAX_RADIUS = 1L << 34; // Larger than any distance between int points
+
+      // Points, in insertion order
+      private long[] u, v;
+      private int[] next; // Next point in the same leaf, or NONE
+      private int size;
+
+      // Tree nodes. Leaves have no children and list their points from head to tail.
+      private int[] lowChild = new int[0], highChild = new int[0], dimension = new int[0], head = new int[0],
+              tail = new int[0], count = new int[0], builtCount = new int[0], minIndex = new int[0];
+      private long[] split = new long[0], minU = new long[0], maxU = new long[0], minV = new long[0], maxV = new long[0];
+      private int nodes;
+      private int[] freeNodes = new int[16];
+      private int freeCount;
+      private int root = NONE;
+
+      // Scratch space for rebuilds and for the path of an append
+      private int[] items = new int[0], buffer = new int[0], path = new int[64];
+
+      // Current nearest() search
+      private long bestDistance;
+      private int best;
+
+      ManhattanPointIndex(int[] x_coords, int[] y_coords) {
+          int n = x_coords.length;
+          u = new long[Math.max(n, 4)];
+          v = new long[u.length];
+          next = new int[u.length];
+          allocateNodes(Math.max(16, 2 * n / LEAF_SIZE + 8));
+          for (int i = 0; i < n; i++) {
+              u[i] = (long) x_coords[i] + y_coords[i];
+              v[i] = (long) x_coords[i] - y_coords[i];
+          }
+          size = n;
+          if (n > 0) {
+              ensureScratch(n);
+              for (int i = 0; i < n; i++) {
+                  items[i] = i;
+              }
+              root = build(0, n);
+          }
+      }
+
+      public int size() {
+          return size;
+      }
+
+      // Adds a point and returns its index
+      public int append(int x, int y) {
+          if (size == u.length) {
+              int capacity = size * 2;
+              u = java.util.Arrays.copyOf(u, capacity);
+              v = java.util.Arrays.copyOf(v, capacity);
+              next = java.util.Arrays.copyOf(next, capacity);
+          }
+          int index = size++;
+          u[index] = (long) x + y;
+          v[index] = (long) x - y;
+          next[index] = NONE;
+          if (root == NONE) {
+              ensureScratch(1);
+              items[0] = index;
+              root = build(0, 1);
+              return index;
+          }
+
+          // Walk down to the leaf, widening the boxes on the way
+          int depth = 0;
+          int node = root;
+          while (true) {
+              if (depth == path.length) path = java.util.Arrays.copyOf(path, depth * 2);
+              path[depth++] = node;
+              count[node]++;
+              minU[node] = Math.min(minU[node], u[index]);
+              maxU[node] = Math.max(maxU[node], u[index]);
+              minV[node] = Math.min(minV[node], v[index]);
+              maxV[node] = Math.max(maxV[node], v[index]);
+              if (lowChild[node] == NONE) break;
+              node = coordinate(index, dimension[node]) < split[node] ? lowChild[node] : highChild[node];
+          }
+          next[tail[node]] = index; // The new index is the largest, so the list stays in order
+          tail[node] = index;
+
+          // Rebuild the highest subtree that grew lopsided, or else split an overfull leaf
+          for (int d = 0; d < depth; d++) {
+              int candidate = path[d];
+              boolean rebuild;
+              if (lowChild[candidate] == NONE) {
+                  rebuild = count[candidate] > LEAF_SIZE && !isPoint(candidate);
+              } else {
+                  int larger = Math.max(count[lowChild[candidate]], count[highChild[candidate]]);
+                  rebuild = count[candidate] >= 2 * builtCount[candidate] && 4L * larger > 3L * count[candidate];
               }
-              // If the distance is the same as the current minimum, we check lexicographical order
-              else if (distance == minDistance) {
-                  // If the pair (i, j) is lexicographically smaller than the current closest pair, update it
-                  if (i < closestPair[0] || (i == closestPair[0] && j < closestPair[1])) {
-                      closestPair[0] = i;
-                      closestPair[1] = j;
+              if (rebuild) {
+                  int rebuilt = rebuild(candidate);
+                  if (d == 0) {
+                      root = rebuilt;
+                  } else if (lowChild[path[d - 1]] == candidate) {
+                      lowChild[path[d - 1]] = rebuilt;
+                  } else {
+                      highChild[path[d - 1]] = rebuilt;
                   }
+                  break;
               }
           }
+          return index;
       }
 
-      // Return the closest pair of points
-      return closestPair;
+      public long distance(int i, int j) {
+          return Math.max(Math.abs(u[i] - u[j]), Math.abs(v[i] - v[j]));
+      }
+
+      // Closest other point to point i (smallest index among ties), or -1 if there is none.
+      // Visits the nearer child first and skips a subtree whose box is farther than the best
+      // point so far, or as far but holding only larger indices.
+      public int nearest(int i) {
+          bestDistance = Long.MAX_VALUE;
+          best = -1;
+          if (root != NONE) nearest(root, i);
+          return best;
+      }
+
+      private void nearest(int node, int i) {
+          if (lowChild[node] == NONE) {
+              if (isPoint(node)) {
+                  // All points here are equal: the first one other than i is the only candidate
+                  int j = head[node] == i ? next[i] : head[node];
+                  if (j != NONE) consider(i, j);
+              } else {
+                  for (int j = head[node]; j != NONE; j = next[j]) {
+                      if (j != i) consider(i, j);
+                  }
+              }
+              return;
+          }
+          int near = lowChild[node], far = highChild[node];
+          long nearDistance = boxDistance(near, i), farDistance = boxDistance(far, i);
+          if (farDistance < nearDistance) {
+              int swap = near;
+              near = far;
+              far = swap;
+              long swapDistance = nearDistance;
+              nearDistance = farDistance;
+              farDistance = swapDistance;
+          }
+          if (worthVisiting(near, nearDistance)) nearest(near, i);
+          if (worthVisiting(far, farDistance)) nearest(far, i);
+      }
+
+      private boolean worthVisiting(int node, long boxDistance) {
+          return boxDistance < bestDistance || (boxDistance == bestDistance && minIndex[node] < best);
+      }
+
+      private void consider(int i, int j) {
+          long distance = distance(i, j);
+          if (distance < bestDistance || (distance == bestDistance && j < best)) {
+              bestDistance = distance;
+              best = j;
+          }
+      }
+
+      // Indices of all other points within the given distance of point i, in ascending order
+      public int[] withinRadius(int i, long radius) {
+          radius = Math.min(radius, MAX_RADIUS);
+          int[] found = new int[8];
+          int foundCount = 0;
+          if (root == NONE) return new int[0];
+          int[] stack = new int[64];
+          int depth = 0;
+          stack[depth++] = root;
+          while (depth > 0) {
+              int node = stack[--depth];
+              if (boxDistance(node, i) > radius) continue;
+              if (lowChild[node] == NONE) {
+                  for (int j = head[node]; j != NONE; j = next[j]) {
+                      if (j != i && distance(i, j) <= radius) {
+                          if (foundCount == found.length) found = java.util.Arrays.copyOf(found, foundCount * 2);
+                          found[foundCount++] = j;
+                      }
+                  }
+              } else {
+                  if (depth + 2 > stack.length) stack = java.util.Arrays.copyOf(stack, stack.length * 2);
+                  stack[depth++] = lowChild[node];
+                  stack[depth++] = highChild[node];
+              }
+          }
+          int[] result = java.util.Arrays.copyOf(found, foundCount);
+          java.util.Arrays.sort(result);
+          return result;
+      }
+
+      // All pairs (i, j) with i < j within the given distance, in lexicographic order
+      public int[][] pairsWithinRadius(long radius) {
+          java.util.List<int[]> pairs = new java.util.ArrayList<>();
+          for (int i = 0; i < size; i++) {
+              for (int j : withinRadius(i, radius)) {
+                  if (j > i) pairs.add(new int[] {i, j});
+              }
+          }
+          return pairs.toArray(new int[0][]);
+      }
+
+      // Lexicographically smallest pair at the minimum distance, same answer as Q2b.closestPair.
+      // The first index whose nearest neighbour is at the minimum distance starts the best pair,
+      // and its nearest neighbour (smallest index among ties) completes it.
+      public int[] closestPair() {
+          int[] closestPair = new int[2];
+          long bestPairDistance = Long.MAX_VALUE;
+          for (int i = 0; i < size; i++) {
+              int j = nearest(i);
+              if (j >= 0 && distance(i, j) < bestPairDistance) {
+                  bestPairDistance = distance(i, j);
+                  closestPair[0] = i;
+                  closestPair[1] = j;
+              }
+          }
+          return closestPair;
+      }
+
+      private long coordinate(int point, int axis) {
+          return axis == 0 ? u[point] : v[point];
+      }
+
+      // Chebyshev distance from point i to the box of a node, 0 inside it
+      private long boxDistance(int node, int i) {
+          long du = Math.max(0, Math.max(minU[node] - u[i], u[i] - maxU[node]));
+          long dv = Math.max(0, Math.max(minV[node] - v[i], v[i] - maxV[node]));
+          return Math.max(du, dv);
+      }
+
+      // Whether every point under the node is the same point
+      private boolean isPoint(int node) {
+          return minU[node] == maxU[node] && minV[node] == maxV[node];
+      }
+
+      // Frees a subtree and builds a balanced one from its points
+      private int rebuild(int node) {
+          ensureScratch(count[node]);
+          int collected = collect(node, 0);
+          return build(0, collected);
+      }
+
+      private int collect(int node, int at) {
+          if (lowChild[node] == NONE) {
+              for (int j = head[node]; j != NONE; j = next[j]) {
+                  items[at++] = j;
+              }
+          } else {
+              at = collect(lowChild[node], at);
+              at = collect(highChild[node], at);
+          }
+          if (freeCount == freeNodes.length) freeNodes = java.util.Arrays.copyOf(freeNodes, freeCount * 2);
+          freeNodes[freeCount++] = node;
+          return at;
+      }
+
+      // Builds a subtree over items[from, to): splits at the median of the wider side until a
+      // range fits in a leaf or holds a single distinct point
+      private int build(int from, int to) {
+          int node = newNode();
+          long lowU = Long.MAX_VALUE, highU = Long.MIN_VALUE, lowV = Long.MAX_VALUE, highV = Long.MIN_VALUE;
+          int lowest = Integer.MAX_VALUE;
+          for (int k = from; k < to; k++) {
+              int p = items[k];
+              lowU = Math.min(lowU, u[p]);
+              highU = Math.max(highU, u[p]);
+              lowV = Math.min(lowV, v[p]);
+              highV = Math.max(highV, v[p]);
+              lowest = Math.min(lowest, p);
+          }
+          minU[node] = lowU;
+          maxU[node] = highU;
+          minV[node] = lowV;
+          maxV[node] = highV;
+          minIndex[node] = lowest;
+          count[node] = builtCount[node] = to - from;
+
+          if (to - from <= LEAF_SIZE || isPoint(node)) {
+              java.util.Arrays.sort(items, from, to);
+              lowChild[node] = highChild[node] = NONE;
+              head[node] = items[from];
+              tail[node] = items[to - 1];
+              for (int k = from; k < to; k++) {
+                  next[items[k]] = k + 1 < to ? items[k + 1] : NONE;
+              }
+              return node;
+          }
+
+          int axis = highU - lowU >= highV - lowV ? 0 : 1;
+          long[] key = axis == 0 ? u : v;
+          sortByKeys(items, buffer, key, axis == 0 ? v : u, from, to);
+          // Everything below the median value goes low; if that is nothing, split above it instead
+          int cut = (from + to) >>> 1;
+          long value = key[items[cut]];
+          while (cut > from && key[items[cut - 1]] == value) cut--;
+          if (cut == from) {
+              while (key[items[cut]] == value) cut++;
+              value = key[items[cut]];
+          }
+          dimension[node] = axis;
+          split[node] = value;
+          int low = build(from, cut);
+          int high = build(cut, to);
+          lowChild[node] = low;
+          highChild[node] = high;
+          return node;
+      }
+
+      private int newNode() {
+          if (freeCount > 0) return freeNodes[--freeCount];
+          if (nodes == lowChild.length) allocateNodes(nodes * 2);
+          return nodes++;
+      }
+
+      private void allocateNodes(int capacity) {
+          lowChild = java.util.Arrays.copyOf(lowChild, capacity);
+          highChild = java.util.Arrays.copyOf(highChild, capacity);
+          dimension = java.util.Arrays.copyOf(dimension, capacity);
+          head = java.util.Arrays.copyOf(head, capacity);
+          tail = java.util.Arrays.copyOf(tail, capacity);
+          count = java.util.Arrays.copyOf(count, capacity);
+          builtCount = java.util.Arrays.copyOf(builtCount, capacity);
+          minIndex = java.util.Arrays.copyOf(minIndex, capacity);
+          split = java.util.Arrays.copyOf(split, capacity);
+          minU = java.util.Arrays.copyOf(minU, capacity);
+          maxU = java.util.Arrays.copyOf(maxU, capacity);
+          minV = java.util.Arrays.copyOf(minV, capacity);
+          maxV = java.util.Arrays.copyOf(maxV, capacity);
+      }
+
+      private void ensureScratch(int length) {
+          if (items.length < length) {
+              items = new int[length];
+              buffer = new int[length];
+          }
+      }
   }
 
   public static void main(String[] args) {
@@ -63,5 +508,52 @@ public class Q2b {
 
       // Print the output (the indices of the closest pair)
       System.out.println("Closest pair of points: [" + result[0] + ", " + result[1] + "]");
+
+      // Repeated queries against the same points through the spatial index
+      ManhattanPointIndex index = new ManhattanPointIndex(x_coords, y_coords);
+      System.out.println("Closest point to 0: " + index.nearest(0));  // Output: 3
+      System.out.println("Points within 2 of 0: " + java.util.Arrays.toString(index.withinRadius(0, 2)));  // Output: [1, 3]
+
+      // Run with "test" to check the index against brute force on clustered points
+      if (args.length > 0 && args[0].equals("test")) {
+          testClustered(200_000);
+      }
+  }
+
+  // Most points in one small square plus a few far outliers, half given up front and half
+  // appended. Compares nearest() with a brute-force scan on a sample, and closestPair() with
+  // Q2b.closestPair, and times both on the index.
+  static void testClustered(int n) {
+      java.util.Random random = new java.util.Random(42);
+      int[] x = new int[n];
+      int[] y = new int[n];
+      for (int i = 0; i < n; i++) {
+          boolean outlier = i % 1000 == 0;
+          x[i] = outlier ? random.nextInt(2_000_000_000) - 1_000_000_000 : 5_000 + random.nextInt(300);
+          y[i] = outlier ? random.nextInt(2_000_000_000) - 1_000_000_000 : -7_000 + random.nextInt(300);
+      }
+      long start = System.nanoTime();
+      ManhattanPointIndex index = new ManhattanPointIndex(java.util.Arrays.copyOf(x, n / 2), java.util.Arrays.copyOf(y, n / 2));
+      for (int i = n / 2; i < n; i++) {
+          index.append(x[i], y[i]);
+      }
+      int[] pair = index.closestPair();
+      long indexNanos = System.nanoTime() - start;
+
+      int mismatches = java.util.Arrays.equals(pair, closestPair(x, y)) ? 0 : 1;
+      for (int i = 0; i < n; i += 997) {
+          int expected = -1;
+          long expectedDistance = Long.MAX_VALUE;
+          for (int j = 0; j < n; j++) {
+              long distance = Math.abs((long) x[i] - x[j]) + Math.abs((long) y[i] - y[j]);
+              if (j != i && distance < expectedDistance) {
+                  expectedDistance = distance;
+                  expected = j;
+              }
+          }
+          if (index.nearest(i) != expected) mismatches++;
+      }
+      System.out.println("Clustered, " + n + " points: build, append and closest pair " + indexNanos / 1_000_000
+              + " ms, " + (mismatches == 0 ? "matches brute force" : mismatches + " MISMATCHES"));
   }
 }
@@ -21,16 +21,91 @@ other devices to it with cost 2, resulting in a total cost of 3. */
 
 
 import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntConsumer;
 
 public class Q3a {
-    // Helper class to represent an edge
-    static class Edge {
-        int device1, device2, cost;
+    // Minimum spanning tree algorithms available to minCostToConnectDevices
+    enum MstEngine {
+        KRUSKAL,          // Sort every edge, then scan
+        FILTER_KRUSKAL,   // Partition around a pivot and drop edges inside a component before sorting them
+        PARALLEL_BORUVKA  // Cheapest edge per component in parallel, lock-free union-find
+    }
+
+    // Edge list stored as parallel primitive arrays (structure of arrays)
+    static class EdgeList {
+        final int[] u, v;
+        final long[] cost;
+        int size;
+
+        EdgeList(int capacity) {
+            u = new int[capacity];
+            v = new int[capacity];
+            cost = new long[capacity];
+        }
+
+        void add(int device1, int device2, long edgeCost) {
+            u[size] = device1;
+            v[size] = device2;
+            cost[size] = edgeCost;
+            size++;
+        }
+
+        // Returns the edge indices ordered by cost (ascending, stable)
+        int[] sortedByCost() {
+            int[] order = new int[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            sortByCost(order, 0, size);
+            return order;
+        }
+
+        // Sorts the edge indices in order[from, to) by cost with a stable LSD radix sort on
+        // 16-bit digits. Costs are offset by Long.MIN_VALUE so negatives sort first.
+        void sortByCost(int[] order, int from, int to) {
+            int length = to - from;
+            if (length < 2) return;
+            int[] source = Arrays.copyOfRange(order, from, to);
+            int[] target = new int[length];
+
+            // Only sort on the digits where the costs actually differ
+            long differing = 0;
+            for (int i = 1; i < length; i++) {
+                differing |= cost[source[i]] ^ cost[source[0]];
+            }
+
+            int[] counts = new int[1 << 16];
+            for (int shift = 0; shift < 64; shift += 16) {
+                if (((differing >>> shift) & 0xFFFF) == 0) continue;
+                Arrays.fill(counts, 0);
+                for (int i = 0; i < length; i++) {
+                    counts[digit(cost[source[i]], shift)]++;
+                }
+                // Prefix sums give the start position of each digit
+                int position = 0;
+                for (int d = 0; d < counts.length; d++) {
+                    int count = counts[d];
+                    counts[d] = position;
+                    position += count;
+                }
+                for (int i = 0; i < length; i++) {
+                    int edge = source[i];
+                    target[counts[digit(cost[edge], shift)]++] = edge;
+                }
+                int[] swap = source;
+                source = target;
+                target = swap;
+            }
+            System.arraycopy(source, 0, order, from, length);
+        }
 
-        Edge(int device1, int device2, int cost) {
-            this.device1 = device1;
-            this.device2 = device2;
-            this.cost = cost;
+        private static int digit(long value, int shift) {
+            return (int) (((value ^ Long.MIN_VALUE) >>> shift) & 0xFFFF);
         }
     }
 
@@ -46,12 +121,13 @@ public class Q3a {
             }
         }
 
-        // Find operation with path compression
+        // Iterative find with path halving, so deep trees cannot overflow the stack
         public int find(int x) {
-            if (parent[x] != x) {
-                parent[x] = find(parent[x]);
+            while (parent[x] != x) {
+                parent[x] = parent[parent[x]];
+                x = parent[x];
             }
-            return parent[x];
+            return x;
         }
 
         // Union operation with union by rank
@@ -73,38 +149,55 @@ public class Q3a {
     }
 
     // Method to find the minimum cost to connect all devices
-    public static int minCostToConnectDevices(int n, int[] modules, int[][] connections) {
-        // Create a list to store all edges (connections and virtual module edges)
-        Edge[] edges = new Edge[connections.length + n]; // +n for the virtual edges
+    public static long minCostToConnectDevices(int n, int[] modules, int[][] connections) {
+        return minCostToConnectDevices(n, modules, connections, MstEngine.KRUSKAL);
+    }
+
+    // Same as above with a choice of MST algorithm; all engines give the same total cost
+    public static long minCostToConnectDevices(int n, int[] modules, int[][] connections, MstEngine engine) {
+        EdgeList edges = buildEdges(n, modules, connections);
+        switch (engine) {
+            case FILTER_KRUSKAL:
+                return filterKruskal(n, edges);
+            case PARALLEL_BORUVKA:
+                return parallelBoruvka(n, edges, ForkJoinPool.commonPool());
+            default:
+                return kruskal(n, edges);
+        }
+    }
+
+    // Builds the connection edges plus one virtual edge from every device to the "hub" (node n)
+    static EdgeList buildEdges(int n, int[] modules, int[][] connections) {
+        EdgeList edges = new EdgeList(connections.length + n); // +n for the virtual edges
 
         // Add the real connection edges to the list
-        int index = 0;
         for (int[] conn : connections) {
-            edges[index++] = new Edge(conn[0] - 1, conn[1] - 1, conn[2]); // 0-based index
+            edges.add(conn[0] - 1, conn[1] - 1, conn[2]); // 0-based index
         }
 
         // Add the virtual edges (device to "hub")
         for (int i = 0; i < n; i++) {
-            edges[index++] = new Edge(i, n, modules[i]); // Connect each device to the virtual "hub"
+            edges.add(i, n, modules[i]); // Connect each device to the virtual "hub"
         }
+        return edges;
+    }
 
-        // Sort the edges by cost (ascending order)
-        Arrays.sort(edges, (a, b) -> a.cost - b.cost);
-
+    // Kruskal's algorithm over the radix-sorted edges
+    static long kruskal(int n, EdgeList edges) {
         // Initialize Union-Find (Disjoint Set) for Kruskal's algorithm
         UnionFind uf = new UnionFind(n + 1); // n + 1 because we have n devices and the virtual "hub"
 
-        int totalCost = 0;
+        long totalCost = 0;
         int count = 0;
 
         // Process the sorted edges
-        for (Edge edge : edges) {
-            int root1 = uf.find(edge.device1);
-            int root2 = uf.find(edge.device2);
+        for (int edge : edges.sortedByCost()) {
+            int root1 = uf.find(edges.u[edge]);
+            int root2 = uf.find(edges.v[edge]);
 
             if (root1 != root2) {
                 uf.union(root1, root2);
-                totalCost += edge.cost;
+                totalCost += edges.cost[edge];
                 count++;
 
                 // If we've connected n devices (including the virtual hub), we can stop
@@ -117,12 +210,735 @@ public class Q3a {
         return totalCost;
     }
 
+    // Filter-Kruskal: edges are split around a random pivot cost. The light half is solved first;
+    // afterwards every heavy edge whose endpoints are already connected is dropped, so only the
+    // surviving heavy edges are ever sorted.
+    static long filterKruskal(int n, EdgeList edges) {
+        FilterKruskal search = new FilterKruskal(n, edges);
+        int[] order = new int[edges.size];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        search.run(order, 0, order.length);
+        return search.totalCost;
+    }
+
+    private static class FilterKruskal {
+        // Below this many edges a range is sorted and scanned directly
+        private static final int BASE_CASE = 1 << 16;
+
+        private final int n;
+        private final EdgeList edges;
+        private final UnionFind uf;
+        long totalCost = 0;
+        int count = 0;
+
+        FilterKruskal(int n, EdgeList edges) {
+            this.n = n;
+            this.edges = edges;
+            this.uf = new UnionFind(n + 1);
+        }
+
+        void run(int[] order, int from, int to) {
+            if (count == n || from >= to) return;
+            if (to - from <= BASE_CASE) {
+                edges.sortByCost(order, from, to);
+                scan(order, from, to);
+                return;
+            }
+
+            long pivot = edges.cost[order[from + ThreadLocalRandom.current().nextInt(to - from)]];
+            int split = partition(order, from, to, pivot, true);
+            if (split == to) {
+                split = partition(order, from, to, pivot, false);
+                if (split == from) {
+                    scan(order, from, to); // Every cost equals the pivot, already in order
+                    return;
+                }
+            }
+            run(order, from, split);
+            run(order, split, filter(order, split, to));
+        }
+
+        // Moves edges with cost <= pivot (or < pivot) to the front and returns where the rest begins
+        private int partition(int[] order, int from, int to, long pivot, boolean inclusive) {
+            int split = from;
+            for (int i = from; i < to; i++) {
+                long cost = edges.cost[order[i]];
+                if (inclusive ? cost <= pivot : cost < pivot) {
+                    int swap = order[split];
+                    order[split++] = order[i];
+                    order[i] = swap;
+                }
+            }
+            return split;
+        }
+
+        // Keeps only edges between different components and returns the new end of the range
+        private int filter(int[] order, int from, int to) {
+            int kept = from;
+            for (int i = from; i < to; i++) {
+                int edge = order[i];
+                if (uf.find(edges.u[edge]) != uf.find(edges.v[edge])) {
+                    order[kept++] = edge;
+                }
+            }
+            return kept;
+        }
+
+        private void scan(int[] order, int from, int to) {
+            for (int i = from; i < to && count < n; i++) {
+                int edge = order[i];
+                int root1 = uf.find(edges.u[edge]);
+                int root2 = uf.find(edges.v[edge]);
+                if (root1 != root2) {
+                    uf.union(root1, root2);
+                    totalCost += edges.cost[edge];
+                    count++;
+                }
+            }
+        }
+    }
+
+    // Parallel Boruvka: in each round every component picks its cheapest outgoing edge in
+    // parallel, and the picked edges are merged through a CAS-based union-find. Ties are broken
+    // by edge index so all threads agree on one order and the picked edges never form a cycle.
+    static long parallelBoruvka(int n, EdgeList edges, ForkJoinPool pool) {
+        int nodes = n + 1; // n devices and the virtual "hub"
+        ConcurrentUnionFind uf = new ConcurrentUnionFind(nodes);
+        AtomicIntegerArray cheapest = new AtomicIntegerArray(nodes);
+        AtomicLong totalCost = new AtomicLong();
+        AtomicLong unions = new AtomicLong();
+
+        int[] live = new int[edges.size];
+        for (int i = 0; i < live.length; i++) {
+            live[i] = i;
+        }
+        int liveCount = live.length;
+
+        while (unions.get() < n && liveCount > 0) {
+            for (int i = 0; i < nodes; i++) {
+                cheapest.set(i, -1);
+            }
+            final int[] round = live;
+
+            // Cheapest outgoing edge of every component
+            forEach(pool, 0, liveCount, index -> {
+                int edge = round[index];
+                int root1 = uf.find(edges.u[edge]);
+                int root2 = uf.find(edges.v[edge]);
+                if (root1 != root2) {
+                    offer(cheapest, root1, edge, edges);
+                    offer(cheapest, root2, edge, edges);
+                }
+            });
+
+            // Merge along the picked edges; an edge picked by both of its components is counted once
+            long before = unions.get();
+            forEach(pool, 0, nodes, node -> {
+                int edge = cheapest.get(node);
+                if (edge >= 0 && uf.union(edges.u[edge], edges.v[edge])) {
+                    totalCost.addAndGet(edges.cost[edge]);
+                    unions.incrementAndGet();
+                }
+            });
+            if (unions.get() == before) break; // No component has an outgoing edge left
+
+            // Drop edges that now lie inside a component
+            int kept = 0;
+            for (int i = 0; i < liveCount; i++) {
+                int edge = live[i];
+                if (uf.find(edges.u[edge]) != uf.find(edges.v[edge])) {
+                    live[kept++] = edge;
+                }
+            }
+            liveCount = kept;
+        }
+        return totalCost.get();
+    }
+
+    // Replaces the candidate of a component when the edge is cheaper (ties: smaller index)
+    private static void offer(AtomicIntegerArray cheapest, int root, int edge, EdgeList edges) {
+        while (true) {
+            int current = cheapest.get(root);
+            if (current >= 0 && (edges.cost[current] < edges.cost[edge]
+                    || (edges.cost[current] == edges.cost[edge] && current < edge))) {
+                return;
+            }
+            if (cheapest.compareAndSet(root, current, edge)) return;
+        }
+    }
+
+    // Runs action for every index in [from, to) on the pool, in chunks
+    private static void forEach(ForkJoinPool pool, int from, int to, IntConsumer action) {
+        pool.invoke(new RangeAction(from, to, action));
+    }
+
+    private static class RangeAction extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private static final int CHUNK = 1 << 13;
+        private final int from, to;
+        private final IntConsumer action;
+
+        RangeAction(int from, int to, IntConsumer action) {
+            this.from = from;
+            this.to = to;
+            this.action = action;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= CHUNK) {
+                for (int i = from; i < to; i++) {
+                    action.accept(i);
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new RangeAction(from, mid, action), new RangeAction(mid, to, action));
+        }
+    }
+
+    // Lock-free Union-Find: parents are updated with compare-and-set, and a root is always linked
+    // under the smaller of the two roots, so concurrent unions cannot create a cycle.
+    static class ConcurrentUnionFind {
+        private final AtomicIntegerArray parent;
+
+        ConcurrentUnionFind(int n) {
+            parent = new AtomicIntegerArray(n);
+            for (int i = 0; i < n; i++) {
+                parent.set(i, i);
+            }
+        }
+
+        // Find with path halving; a failed CAS only means another thread already shortened the path
+        int find(int x) {
+            while (true) {
+                int p = parent.get(x);
+                if (p == x) return x;
+                int grandparent = parent.get(p);
+                if (p != grandparent) {
+                    parent.compareAndSet(x, p, grandparent);
+                }
+                x = grandparent;
+            }
+        }
+
+        // Returns true if this call joined two different components
+        boolean union(int x, int y) {
+            while (true) {
+                int rootX = find(x);
+                int rootY = find(y);
+                if (rootX == rootY) return false;
+                int child = Math.max(rootX, rootY);
+                int root = Math.min(rootX, rootY);
+                if (parent.compareAndSet(child, child, root)) return true;
+            }
+        }
+    }
+
+    // Keeps the minimum cost current while connections and module prices change.
+    // The chosen edges (virtual hub edges included) are held in a link-cut tree. A new or cheaper
+    // edge is handled with the cycle property: it replaces the most expensive edge on the tree path
+    // between its endpoints when it is cheaper, in O(log n). Removing a chosen edge, or making it
+    // more expensive, splits the tree in two; the replacement is the cheapest unused edge leaving
+    // the smaller half (cut property). Every vertex keeps its chosen and unused edges in two
+    // intrusive lists, so both halves are searched over chosen edges in turn until the smaller
+    // one is complete, and only the unused edges of that half are checked. A removal costs time
+    // in the size and degree of the smaller half, never a sort of every edge.
+    static class DeviceNetworkCost {
+        private static final int NONE = -1;
+
+        private final int n; // Devices 0..n-1, node n is the virtual "hub"
+
+        // Edge id -> endpoints and cost; ids 0..n-1 are the module (hub) edges
+        private int[] edgeU, edgeV;
+        private long[] edgeCost;
+        private boolean[] inTree, removed;
+        private int edgeCount;
+
+        // Per-vertex lists of chosen and unused edges. Edge id has the half-edges 2 * id (at
+        // edgeU) and 2 * id + 1 (at edgeV), linked through nextHalf / previousHalf.
+        private final int[] treeHead, spareHead;
+        private int[] nextHalf, previousHalf;
+
+        // Search over the two halves of a cut tree: side s marks its vertices with epoch + s
+        private final int[] seen;
+        private final int[][] queue = new int[2][];
+        private final int[] queueHead = new int[2], queueTail = new int[2], cursor = new int[2];
+        private int epoch;
+
+        private final LinkCutTree tree;
+        private long totalCost;
+
+        DeviceNetworkCost(int n, int[] modules, int[][] connections) {
+            this.n = n;
+            int capacity = n + connections.length + 1;
+            edgeU = new int[capacity];
+            edgeV = new int[capacity];
+            edgeCost = new long[capacity];
+            inTree = new boolean[capacity];
+            removed = new boolean[capacity];
+            nextHalf = new int[2 * capacity];
+            previousHalf = new int[2 * capacity];
+            treeHead = new int[n + 1];
+            spareHead = new int[n + 1];
+            Arrays.fill(treeHead, NONE);
+            Arrays.fill(spareHead, NONE);
+            seen = new int[n + 1];
+            queue[0] = new int[n + 1];
+            queue[1] = new int[n + 1];
+            tree = new LinkCutTree(n + 1 + capacity);
+
+            for (int i = 0; i < n; i++) {
+                newEdge(i, n, modules[i]);
+            }
+            for (int[] conn : connections) {
+                newEdge(conn[0] - 1, conn[1] - 1, conn[2]);
+            }
+
+            // Initial tree with Kruskal
+            EdgeList edges = new EdgeList(edgeCount);
+            for (int id = 0; id < edgeCount; id++) {
+                edges.add(edgeU[id], edgeV[id], edgeCost[id]);
+            }
+            UnionFind uf = new UnionFind(n + 1);
+            for (int id : edges.sortedByCost()) {
+                int root1 = uf.find(edgeU[id]);
+                int root2 = uf.find(edgeV[id]);
+                if (root1 != root2) {
+                    uf.union(root1, root2);
+                    linkEdge(id);
+                } else {
+                    addSpare(id);
+                }
+            }
+        }
+
+        // Current minimum cost to connect all devices
+        public long minCost() {
+            return totalCost;
+        }
+
+        // Adds a connection between two devices (1-based, like connections rows) and returns its id
+        public int addConnection(int device1, int device2, int cost) {
+            int id = newEdge(device1 - 1, device2 - 1, cost);
+            insert(id);
+            return id;
+        }
+
+        // Removes a connection previously returned by addConnection or given at construction.
+        // Connection ids given at construction are n, n + 1, ... in the order of the connections array.
+        public void removeConnection(int id) {
+            if (id < n || id >= edgeCount || removed[id]) {
+                throw new IllegalArgumentException("No such connection: " + id);
+            }
+            delete(id);
+            removed[id] = true;
+        }
+
+        // Changes the price of the communication module of a device (1-based)
+        public void updateModuleCost(int device, int cost) {
+            if (device < 1 || device > n) {
+                throw new IllegalArgumentException("No such device: " + device);
+            }
+            int id = device - 1;
+            if (inTree[id] && cost <= edgeCost[id]) {
+                // A chosen edge getting cheaper stays chosen
+                totalCost += cost - edgeCost[id];
+                edgeCost[id] = cost;
+                tree.setValue(edgeNode(id), cost);
+                return;
+            }
+            delete(id);
+            edgeCost[id] = cost;
+            insert(id);
+        }
+
+        private int newEdge(int u, int v, long cost) {
+            if (edgeCount == edgeU.length) {
+                int capacity = edgeCount * 2;
+                edgeU = Arrays.copyOf(edgeU, capacity);
+                edgeV = Arrays.copyOf(edgeV, capacity);
+                edgeCost = Arrays.copyOf(edgeCost, capacity);
+                inTree = Arrays.copyOf(inTree, capacity);
+                removed = Arrays.copyOf(removed, capacity);
+                nextHalf = Arrays.copyOf(nextHalf, 2 * capacity);
+                previousHalf = Arrays.copyOf(previousHalf, 2 * capacity);
+                tree.ensureCapacity(n + 1 + capacity);
+            }
+            int id = edgeCount++;
+            edgeU[id] = u;
+            edgeV[id] = v;
+            edgeCost[id] = cost;
+            return id;
+        }
+
+        // Adds an edge to the graph, swapping it into the tree when it is cheaper than the
+        // most expensive edge on the cycle it would close
+        private void insert(int id) {
+            int u = edgeU[id], v = edgeV[id];
+            if (u == v) {
+                addSpare(id);
+            } else if (!tree.connected(u, v)) {
+                linkEdge(id);
+            } else {
+                int heaviest = tree.pathMax(u, v) - (n + 1);
+                if (edgeCost[heaviest] > edgeCost[id]) {
+                    cutEdge(heaviest);
+                    addSpare(heaviest);
+                    linkEdge(id);
+                } else {
+                    addSpare(id);
+                }
+            }
+        }
+
+        // Takes an edge out of the graph; a chosen edge is replaced by the cheapest unused edge
+        // that reconnects the two halves
+        private void delete(int id) {
+            if (!inTree[id]) {
+                removeSpare(id);
+                return;
+            }
+            cutEdge(id);
+            int side = smallerHalf(edgeU[id], edgeV[id]);
+            int mark = epoch + side;
+            int best = NONE;
+            for (int i = 0; i < queueTail[side]; i++) {
+                for (int half = spareHead[queue[side][i]]; half != NONE; half = nextHalf[half]) {
+                    int candidate = half >> 1;
+                    if (seen[endpoint(half ^ 1)] == mark) continue; // Both ends in this half
+                    if (best == NONE || edgeCost[candidate] < edgeCost[best]
+                            || (edgeCost[candidate] == edgeCost[best] && candidate < best)) {
+                        best = candidate;
+                    }
+                }
+            }
+            if (best != NONE) {
+                removeSpare(best);
+                linkEdge(best);
+            }
+        }
+
+        // Explores the trees of u and v one chosen edge at a time each, in turn, and returns the
+        // side (0 for u, 1 for v) that was explored completely first; its vertices are then in
+        // queue[side][0, queueTail[side]) and marked with epoch + side
+        private int smallerHalf(int u, int v) {
+            if (epoch > Integer.MAX_VALUE - 2) {
+                Arrays.fill(seen, 0);
+                epoch = 0;
+            }
+            epoch += 2;
+            startSearch(0, u);
+            startSearch(1, v);
+            while (true) {
+                if (!searchStep(0)) return 0;
+                if (!searchStep(1)) return 1;
+            }
+        }
+
+        private void startSearch(int side, int start) {
+            seen[start] = epoch + side;
+            queue[side][0] = start;
+            queueHead[side] = 0;
+            queueTail[side] = 1;
+            cursor[side] = NONE;
+        }
+
+        // Follows one chosen edge of the search; returns false once the side has none left
+        private boolean searchStep(int side) {
+            int half = cursor[side];
+            while (half == NONE) {
+                if (queueHead[side] == queueTail[side]) return false;
+                half = treeHead[queue[side][queueHead[side]++]];
+            }
+            cursor[side] = nextHalf[half];
+            int next = endpoint(half ^ 1);
+            if (seen[next] != epoch + side) {
+                seen[next] = epoch + side;
+                queue[side][queueTail[side]++] = next;
+            }
+            return true;
+        }
+
+        private int endpoint(int half) {
+            return (half & 1) == 0 ? edgeU[half >> 1] : edgeV[half >> 1];
+        }
+
+        private int edgeNode(int id) {
+            return n + 1 + id;
+        }
+
+        private void linkEdge(int id) {
+            int node = edgeNode(id);
+            tree.setValue(node, edgeCost[id]);
+            tree.link(edgeU[id], node);
+            tree.link(node, edgeV[id]);
+            inTree[id] = true;
+            totalCost += edgeCost[id];
+            addHalves(treeHead, id);
+        }
+
+        private void cutEdge(int id) {
+            int node = edgeNode(id);
+            tree.cut(edgeU[id], node);
+            tree.cut(node, edgeV[id]);
+            inTree[id] = false;
+            totalCost -= edgeCost[id];
+            removeHalves(treeHead, id);
+        }
+
+        // Self-loops never reconnect anything, so they stay out of the lists
+        private void addSpare(int id) {
+            if (edgeU[id] != edgeV[id]) addHalves(spareHead, id);
+        }
+
+        private void removeSpare(int id) {
+            if (edgeU[id] != edgeV[id]) removeHalves(spareHead, id);
+        }
+
+        private void addHalves(int[] head, int id) {
+            for (int half = 2 * id; half <= 2 * id + 1; half++) {
+                int vertex = endpoint(half);
+                nextHalf[half] = head[vertex];
+                previousHalf[half] = NONE;
+                if (head[vertex] != NONE) previousHalf[head[vertex]] = half;
+                head[vertex] = half;
+            }
+        }
+
+        private void removeHalves(int[] head, int id) {
+            for (int half = 2 * id; half <= 2 * id + 1; half++) {
+                if (previousHalf[half] != NONE) {
+                    nextHalf[previousHalf[half]] = nextHalf[half];
+                } else {
+                    head[endpoint(half)] = nextHalf[half];
+                }
+                if (nextHalf[half] != NONE) previousHalf[nextHalf[half]] = previousHalf[half];
+            }
+        }
+    }
+
+    // Link-cut tree over array-based splay trees. Every node carries a value and each splay
+    // subtree tracks the node with the largest value, which gives path-maximum queries.
+    static class LinkCutTree {
+        private static final int NONE = -1;
+
+        private int[] left, right, parent, maxNode;
+        private int[] path; // Reused by splay for the nodes above the one being splayed
+        private boolean[] reversed;
+        private long[] value;
+
+        LinkCutTree(int capacity) {
+            left = new int[0];
+            right = new int[0];
+            parent = new int[0];
+            maxNode = new int[0];
+            path = new int[0];
+            reversed = new boolean[0];
+            value = new long[0];
+            ensureCapacity(capacity);
+        }
+
+        void ensureCapacity(int capacity) {
+            int old = left.length;
+            if (capacity <= old) return;
+            left = Arrays.copyOf(left, capacity);
+            right = Arrays.copyOf(right, capacity);
+            parent = Arrays.copyOf(parent, capacity);
+            maxNode = Arrays.copyOf(maxNode, capacity);
+            path = new int[capacity];
+            reversed = Arrays.copyOf(reversed, capacity);
+            value = Arrays.copyOf(value, capacity);
+            for (int x = old; x < capacity; x++) {
+                left[x] = right[x] = parent[x] = NONE;
+                maxNode[x] = x;
+                value[x] = Long.MIN_VALUE; // Device nodes never win a path-maximum query
+            }
+        }
+
+        void setValue(int x, long newValue) {
+            access(x);
+            value[x] = newValue;
+            pushUp(x);
+        }
+
+        boolean connected(int a, int b) {
+            return findRoot(a) == findRoot(b);
+        }
+
+        // Node with the largest value on the path between a and b
+        int pathMax(int a, int b) {
+            makeRoot(a);
+            access(b);
+            return maxNode[b];
+        }
+
+        void link(int a, int b) {
+            makeRoot(a);
+            parent[a] = b;
+        }
+
+        // Removes the tree edge between adjacent nodes a and b
+        void cut(int a, int b) {
+            makeRoot(a);
+            access(b);
+            left[b] = NONE;
+            parent[a] = NONE;
+            pushUp(b);
+        }
+
+        private boolean isSplayRoot(int x) {
+            int p = parent[x];
+            return p == NONE || (left[p] != x && right[p] != x);
+        }
+
+        private void pushUp(int x) {
+            int best = x;
+            if (left[x] != NONE && value[maxNode[left[x]]] > value[best]) best = maxNode[left[x]];
+            if (right[x] != NONE && value[maxNode[right[x]]] > value[best]) best = maxNode[right[x]];
+            maxNode[x] = best;
+        }
+
+        private void flip(int x) {
+            int swap = left[x];
+            left[x] = right[x];
+            right[x] = swap;
+            reversed[x] = !reversed[x];
+        }
+
+        private void pushDown(int x) {
+            if (reversed[x]) {
+                if (left[x] != NONE) flip(left[x]);
+                if (right[x] != NONE) flip(right[x]);
+                reversed[x] = false;
+            }
+        }
+
+        private void rotate(int x) {
+            int y = parent[x];
+            int z = parent[y];
+            if (!isSplayRoot(y)) {
+                if (left[z] == y) left[z] = x; else right[z] = x;
+            }
+            parent[x] = z;
+            if (left[y] == x) {
+                left[y] = right[x];
+                if (right[x] != NONE) parent[right[x]] = y;
+                right[x] = y;
+            } else {
+                right[y] = left[x];
+                if (left[x] != NONE) parent[left[x]] = y;
+                left[x] = y;
+            }
+            parent[y] = x;
+            pushUp(y);
+            pushUp(x);
+        }
+
+        private void splay(int x) {
+            // Push pending reversals down from the splay root before rotating
+            int depth = 0;
+            for (int y = x; ; y = parent[y]) {
+                depth++;
+                if (isSplayRoot(y)) break;
+            }
+            int y = x;
+            for (int i = depth - 1; i >= 0; i--) {
+                path[i] = y;
+                y = parent[y];
+            }
+            for (int i = 0; i < depth; i++) {
+                pushDown(path[i]);
+            }
+
+            while (!isSplayRoot(x)) {
+                y = parent[x];
+                if (!isSplayRoot(y)) {
+                    int z = parent[y];
+                    rotate((left[y] == x) == (left[z] == y) ? y : x);
+                }
+                rotate(x);
+            }
+        }
+
+        private void access(int x) {
+            int last = NONE;
+            for (int y = x; y != NONE; y = parent[y]) {
+                splay(y);
+                right[y] = last;
+                pushUp(y);
+                last = y;
+            }
+            splay(x);
+        }
+
+        private void makeRoot(int x) {
+            access(x);
+            flip(x);
+        }
+
+        private int findRoot(int x) {
+            access(x);
+            while (true) {
+                pushDown(x);
+                if (left[x] == NONE) break;
+                x = left[x];
+            }
+            splay(x);
+            return x;
+        }
+    }
+
+    // Times every engine on a synthetic network of the given size
+    private static void benchmark(int devices, int connectionsPerDevice) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int[] modules = new int[devices];
+        for (int i = 0; i < devices; i++) {
+            modules[i] = random.nextInt(1_000_000);
+        }
+        int[][] connections = new int[devices * connectionsPerDevice][];
+        for (int i = 0; i < connections.length; i++) {
+            connections[i] = new int[] {1 + random.nextInt(devices), 1 + random.nextInt(devices), random.nextInt(1_000_000)};
+        }
+        EdgeList edges = buildEdges(devices, modules, connections);
+
+        long start = System.nanoTime();
+        long expected = kruskal(devices, edges);
+        System.out.printf("Kruskal:        %6d ms%n", (System.nanoTime() - start) / 1_000_000);
+
+        start = System.nanoTime();
+        long cost = filterKruskal(devices, edges);
+        System.out.printf("Filter-Kruskal: %6d ms%s%n", (System.nanoTime() - start) / 1_000_000, cost == expected ? "" : " (MISMATCH)");
+
+        for (int threads : new int[] {1, 4, 16}) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            start = System.nanoTime();
+            cost = parallelBoruvka(devices, edges, pool);
+            System.out.printf("Boruvka x%-2d:    %6d ms%s%n", threads, (System.nanoTime() - start) / 1_000_000, cost == expected ? "" : " (MISMATCH)");
+            pool.shutdown();
+        }
+    }
+
     public static void main(String[] args) {
         // Example 1
         int n = 3;
         int[] modules = {1, 2, 2};
         int[][] connections = {{1, 2, 1}, {2, 3, 1}};
         System.out.println(minCostToConnectDevices(n, modules, connections)); 
+
+        // Run with "benchmark" to compare the engines on a 1M-device synthetic network
+        if (args.length > 0 && args[0].equals("benchmark")) {
+            benchmark(1_000_000, 4);
+        }
+
+        // Keep the cost current as the network changes
+        DeviceNetworkCost network = new DeviceNetworkCost(n, modules, connections);
+        network.updateModuleCost(3, 1);   // Device 3's module becomes cheaper
+        System.out.println(network.minCost());  // Output: 3
+        network.addConnection(1, 3, 0);
+        System.out.println(network.minCost());  // Output: 2
     }
 }
 
@@ -8,13 +8,21 @@ Explanation:
 #WorkLife: Appeared in tweet ID 15, with a total count of 1 mention.
 Note: Output table is sorted in descending order by hashtag_count and hashtag respectively.*/
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 public class Q4a {
     public static void main(String[] args) {
@@ -40,33 +48,1088 @@ public class Q4a {
             System.out.printf("| %-9s | %5d |\n", entry.getKey(), entry.getValue());
         }
         System.out.println("+-----------+-------+");
+
+        // The same tweets through a sliding 7-day window
+        TrendingWindow window = TrendingWindow.ofDays(7);
+        for (Tweet tweet : tweets) {
+            window.add(tweet);
+        }
+        System.out.println("Trending over the last 7 days: " + window.top(3));
+
+        // Run with "benchmark" to compare exact and approximate counting on a Zipf stream
+        if (args.length > 0 && args[0].equals("benchmark")) {
+            benchmark(2_000_000, 1_000_000, 1000);
+            benchmarkWindow(20_000_000, 100_000);
+        }
     }
 
     public static List<Map.Entry<String, Integer>> getTopHashtags(List<Tweet> tweets, String monthYear) {
-        Map<String, Integer> hashtagCount = new HashMap<>();
-        Pattern hashtagPattern = Pattern.compile("#\\w+"); // Regex for hashtags
+        return getTopHashtags(tweets, monthYear, 3);
+    }
+
+    // Top k hashtags of the month, ordered by count (descending), then by hashtag (descending)
+    public static List<Map.Entry<String, Integer>> getTopHashtags(List<Tweet> tweets, String monthYear, int k) {
+        HashtagCounter hashtagCount = new HashtagCounter();
+        for (Tweet tweet : tweets) {
+            if (tweet.tweetDate.startsWith(monthYear)) { // Filter for the requested month
+                hashtagCount.addAll(tweet.tweetText);
+            }
+        }
+        return hashtagCount.top(k);
+    }
+
+    // Target size of one shard of a tweets file
+    private static final long SHARD_BYTES = 32L << 20;
+
+    // Top k hashtags of the month from a newline-delimited UTF-8 file with one tweet per line:
+    //   user_id<TAB>tweet_id<TAB>tweet_date<TAB>tweet_text
+    // The file is split into shards at line boundaries; each shard is memory-mapped and counted
+    // into its own HashtagCounter on the pool, and the counters are merged before the top-k step.
+    // The month filter compares the date bytes in place, so other months are never decoded.
+    public static List<Map.Entry<String, Integer>> getTopHashtags(Path tweetsFile, String monthYear, int k, ForkJoinPool pool)
+            throws IOException {
+        byte[] prefix = monthYear.getBytes(StandardCharsets.UTF_8);
+        try (FileChannel channel = FileChannel.open(tweetsFile, StandardOpenOption.READ)) {
+            long[] bounds = shardBounds(channel);
+            List<Callable<HashtagCounter>> shards = new ArrayList<>();
+            for (int i = 0; i + 1 < bounds.length; i++) {
+                long from = bounds[i], to = bounds[i + 1];
+                shards.add(() -> countShard(channel, from, to, prefix));
+            }
+
+            HashtagCounter hashtagCount = new HashtagCounter();
+            for (Future<HashtagCounter> shard : pool.invokeAll(shards)) {
+                hashtagCount.merge(shard.get());
+            }
+            return hashtagCount.top(k);
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to count hashtags in " + tweetsFile, e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while counting hashtags in " + tweetsFile, e);
+        }
+    }
+
+    // Shard start offsets plus the file size; every shard starts right after a newline
+    private static long[] shardBounds(FileChannel channel) throws IOException {
+        long size = channel.size();
+        List<Long> bounds = new ArrayList<>();
+        bounds.add(0L);
+        ByteBuffer probe = ByteBuffer.allocate(4096);
+        long position = SHARD_BYTES;
+        while (position < size) {
+            // Move forward to the byte after the next newline
+            long next = -1;
+            while (next < 0 && position < size) {
+                probe.clear();
+                int read = channel.read(probe, position);
+                if (read <= 0) break;
+                for (int i = 0; i < read; i++) {
+                    if (probe.get(i) == '\n') {
+                        next = position + i + 1;
+                        break;
+                    }
+                }
+                if (next < 0) position += read;
+            }
+            if (next < 0 || next >= size) break;
+            bounds.add(next);
+            position = next + SHARD_BYTES;
+        }
+        bounds.add(size);
+        long[] result = new long[bounds.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = bounds.get(i);
+        }
+        return result;
+    }
+
+    // Counts the hashtags of every tweet of the month in file[from, to)
+    private static HashtagCounter countShard(FileChannel channel, long from, long to, byte[] monthPrefix) throws IOException {
+        HashtagCounter counter = new HashtagCounter();
+        ByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+        AsciiView view = new AsciiView(bytes);
+        int end = bytes.limit();
+        int line = 0;
+        while (line < end) {
+            int lineEnd = line;
+            while (lineEnd < end && bytes.get(lineEnd) != '\n') lineEnd++;
+
+            // Skip user_id and tweet_id, then check the date prefix byte by byte
+            int date = skipField(bytes, skipField(bytes, line, lineEnd), lineEnd);
+            if (date + monthPrefix.length <= lineEnd && startsWith(bytes, date, monthPrefix)) {
+                int text = skipField(bytes, date, lineEnd);
+                counter.addAll(view, text, lineEnd); // Multi-byte UTF-8 is never a word character
+            }
+            line = lineEnd + 1;
+        }
+        return counter;
+    }
+
+    // Position just after the next tab in [from, lineEnd), or lineEnd if there is none
+    private static int skipField(ByteBuffer bytes, int from, int lineEnd) {
+        int i = from;
+        while (i < lineEnd && bytes.get(i) != '\t') i++;
+        return Math.min(i + 1, lineEnd);
+    }
+
+    private static boolean startsWith(ByteBuffer bytes, int from, byte[] prefix) {
+        for (int i = 0; i < prefix.length; i++) {
+            if (bytes.get(from + i) != prefix[i]) return false;
+        }
+        return true;
+    }
+
+    // Counts hashtags ("#" followed by one or more [a-zA-Z0-9_], like the regex "#\\w+") without
+    // creating a String per match. Hashtags are pure ASCII, so each distinct one is copied once
+    // into a shared byte pool and looked up by hash in an open-addressing table with int counts.
+    // Only the hashtags that make it into the top k are turned into Strings.
+    static class HashtagCounter {
+        // Characters of every distinct hashtag, back to back
+        private byte[] pool = new byte[256];
+        private int poolSize = 0;
+
+        // Distinct hashtags, in order of first appearance
+        private int[] start = new int[16];
+        private int[] length = new int[16];
+        private int[] hash = new int[16];
+        private int[] count = new int[16];
+        private int size = 0;
+
+        // Slot -> hashtag index + 1, or 0 when empty
+        private int[] slots = new int[32];
+
+        // Number of distinct hashtags counted so far
+        int size() {
+            return size;
+        }
+
+        // Approximate number of bytes held by the table
+        long memoryBytes() {
+            return pool.length + (long) start.length * 4 * Integer.BYTES + (long) slots.length * Integer.BYTES;
+        }
+
+        // Scans a tweet and counts every hashtag in it
+        void addAll(CharSequence tweetText) {
+            addAll(tweetText, 0, tweetText.length());
+        }
+
+        // Scans tweetText[from, to) and counts every hashtag in it
+        void addAll(CharSequence tweetText, int from, int to) {
+            int i = from;
+            while (i < to) {
+                if (tweetText.charAt(i) != '#') {
+                    i++;
+                    continue;
+                }
+                int end = hashtagEnd(tweetText, i, to);
+                if (end > i + 1) {
+                    add(tweetText, i, end - i, hashOf(tweetText, i, end), 1);
+                    i = end;
+                } else {
+                    i++; // A lone '#' is not a hashtag
+                }
+            }
+        }
+
+        // Hash of text[from, to), the same value String.hashCode would give
+        static int hashOf(CharSequence text, int from, int to) {
+            int h = 0;
+            for (int i = from; i < to; i++) {
+                h = 31 * h + text.charAt(i);
+            }
+            return h;
+        }
+
+        // End of the word characters following the '#' at hashIndex; hashIndex + 1 if there are none
+        static int hashtagEnd(CharSequence text, int hashIndex, int to) {
+            int end = hashIndex + 1;
+            while (end < to && isWordChar(text.charAt(end))) end++;
+            return end;
+        }
+
+        // Adds every count of another counter to this one
+        void merge(HashtagCounter other) {
+            AsciiView keys = new AsciiView(ByteBuffer.wrap(other.pool));
+            for (int index = 0; index < other.size; index++) {
+                add(keys, other.start[index], other.length[index], other.hash[index], other.count[index]);
+            }
+        }
+
+        // Adds amount to the count of the hashtag source[from, from + len) whose String hash is h
+        // and returns its index; indices are dense and never change
+        int add(CharSequence source, int from, int len, int h, int amount) {
+            int mask = slots.length - 1;
+            int slot = mix(h) & mask;
+            while (slots[slot] != 0) {
+                int index = slots[slot] - 1;
+                if (hash[index] == h && length[index] == len && keyEquals(index, source, from)) {
+                    count[index] += amount;
+                    return index;
+                }
+                slot = (slot + 1) & mask;
+            }
+
+            if (size == start.length) {
+                int capacity = size * 2;
+                start = Arrays.copyOf(start, capacity);
+                length = Arrays.copyOf(length, capacity);
+                hash = Arrays.copyOf(hash, capacity);
+                count = Arrays.copyOf(count, capacity);
+            }
+            if (poolSize + len > pool.length) {
+                pool = Arrays.copyOf(pool, Math.max(pool.length * 2, poolSize + len));
+            }
+            for (int i = 0; i < len; i++) {
+                pool[poolSize + i] = (byte) source.charAt(from + i);
+            }
+            start[size] = poolSize;
+            length[size] = len;
+            hash[size] = h;
+            count[size] = amount;
+            poolSize += len;
+            slots[slot] = ++size;
+            if (size * 2 > slots.length) {
+                rehash();
+            }
+            return size - 1;
+        }
+
+        private boolean keyEquals(int index, CharSequence source, int from) {
+            int offset = start[index];
+            for (int i = 0; i < length[index]; i++) {
+                if (pool[offset + i] != source.charAt(from + i)) return false;
+            }
+            return true;
+        }
+
+        // The k hashtags with the highest counts, ordered by count (descending), then by
+        // hashtag (descending). A bounded min-heap keeps the k best seen so far.
+        List<Map.Entry<String, Integer>> top(int k) {
+            int[] heap = new int[Math.max(0, Math.min(k, size))];
+            int heapSize = 0;
+            for (int index = 0; index < size && heap.length > 0; index++) {
+                if (heapSize < heap.length) {
+                    heap[heapSize++] = index;
+                    siftUp(heap, heapSize - 1);
+                } else if (ranksAbove(index, heap[0])) {
+                    heap[0] = index;
+                    siftDown(heap, heapSize);
+                }
+            }
+
+            // Pop the heap from worst to best into the result
+            Map.Entry<String, Integer>[] result = newEntryArray(heapSize);
+            for (int i = heapSize - 1; i >= 0; i--) {
+                int index = heap[0];
+                result[i] = Map.entry(hashtag(index), count[index]);
+                heap[0] = heap[i];
+                siftDown(heap, i);
+            }
+            return new ArrayList<>(Arrays.asList(result));
+        }
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private static Map.Entry<String, Integer>[] newEntryArray(int size) {
+            return (Map.Entry<String, Integer>[]) new Map.Entry[size];
+        }
+
+        // Whether hashtag a comes before hashtag b in the result order
+        private boolean ranksAbove(int a, int b) {
+            if (count[a] != count[b]) return count[a] > count[b];
+            return compareText(a, b) > 0;
+        }
+
+        String hashtag(int index) {
+            return new String(pool, start[index], length[index], StandardCharsets.US_ASCII);
+        }
+
+        // Compares two hashtags like String.compareTo, without creating Strings
+        int compareText(int a, int b) {
+            int common = Math.min(length[a], length[b]);
+            for (int i = 0; i < common; i++) {
+                byte ca = pool[start[a] + i];
+                byte cb = pool[start[b] + i];
+                if (ca != cb) return ca - cb;
+            }
+            return length[a] - length[b];
+        }
+
+        // Min-heap on the result order: the root is the hashtag that ranks lowest
+        private void siftUp(int[] heap, int child) {
+            while (child > 0) {
+                int parent = (child - 1) >>> 1;
+                if (!ranksAbove(heap[parent], heap[child])) break;
+                int swap = heap[parent];
+                heap[parent] = heap[child];
+                heap[child] = swap;
+                child = parent;
+            }
+        }
+
+        private void siftDown(int[] heap, int heapSize) {
+            int parent = 0;
+            while (true) {
+                int child = 2 * parent + 1;
+                if (child >= heapSize) break;
+                if (child + 1 < heapSize && ranksAbove(heap[child], heap[child + 1])) child++;
+                if (!ranksAbove(heap[parent], heap[child])) break;
+                int swap = heap[parent];
+                heap[parent] = heap[child];
+                heap[child] = swap;
+                parent = child;
+            }
+        }
+
+        private void rehash() {
+            slots = new int[slots.length * 2];
+            int mask = slots.length - 1;
+            for (int index = 0; index < size; index++) {
+                int slot = mix(hash[index]) & mask;
+                while (slots[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                slots[slot] = index + 1;
+            }
+        }
+
+        private static int mix(int h) {
+            h *= 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+
+        // Same characters as \w in a Java regex without UNICODE_CHARACTER_CLASS
+        static boolean isWordChar(char c) {
+            return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+        }
+    }
+
+    // Hashtag dictionary whose ids can be released and reused, for structures whose set of live
+    // hashtags keeps changing. Hashtags are ASCII: each id keeps its characters in a byte array
+    // that the next hashtag given the id reuses. Lookups go through an open-addressing table with
+    // backward-shift deletion, and released ids are handed out again last-released first.
+    static class HashtagIds {
+        private byte[][] keys = new byte[16][];
+        private int[] keyLength = new int[16]; // -1 for a released id
+        private int[] keyHash = new int[16];   // String hash of the hashtag
+        private int[] released = new int[16];
+        private int releasedCount = 0;
+        private int idLimit = 0; // Ids handed out so far are below this
+        private int size = 0;
+
+        // Slot -> id + 1, or 0 when empty
+        private int[] slots = new int[32];
+
+        // Number of live hashtags
+        int size() {
+            return size;
+        }
+
+        // Every id in use is below this, so arrays indexed by id need this many entries
+        int idLimit() {
+            return idLimit;
+        }
+
+        // Id of the hashtag source[from, from + len) whose String hash is h, or -1
+        int find(CharSequence source, int from, int len, int h) {
+            int mask = slots.length - 1;
+            for (int slot = HashtagCounter.mix(h) & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+                int id = slots[slot] - 1;
+                if (keyHash[id] == h && keyLength[id] == len && keyEquals(id, source, from)) return id;
+            }
+            return -1;
+        }
+
+        // Gives an id to a hashtag that has none
+        int add(CharSequence source, int from, int len, int h) {
+            int id;
+            if (releasedCount > 0) {
+                id = released[--releasedCount];
+            } else {
+                if (idLimit == keyLength.length) {
+                    int capacity = idLimit * 2;
+                    keys = Arrays.copyOf(keys, capacity);
+                    keyLength = Arrays.copyOf(keyLength, capacity);
+                    keyHash = Arrays.copyOf(keyHash, capacity);
+                }
+                id = idLimit++;
+            }
+            if (keys[id] == null || keys[id].length < len) {
+                keys[id] = new byte[Math.max(len, 16)];
+            }
+            for (int i = 0; i < len; i++) {
+                keys[id][i] = (byte) source.charAt(from + i);
+            }
+            keyLength[id] = len;
+            keyHash[id] = h;
+            insertSlot(id);
+            if (++size * 2 > slots.length) {
+                rehash();
+            }
+            return id;
+        }
+
+        // Releases an id; it may be given to the next hashtag added
+        void remove(int id) {
+            int mask = slots.length - 1;
+            int hole = HashtagCounter.mix(keyHash[id]) & mask;
+            while (slots[hole] != id + 1) {
+                hole = (hole + 1) & mask;
+            }
+            // Shift later entries of the probe run back so lookups never stop at the hole
+            for (int next = (hole + 1) & mask; slots[next] != 0; next = (next + 1) & mask) {
+                int home = HashtagCounter.mix(keyHash[slots[next] - 1]) & mask;
+                if (((next - home) & mask) >= ((next - hole) & mask)) {
+                    slots[hole] = slots[next];
+                    hole = next;
+                }
+            }
+            slots[hole] = 0;
+
+            keyLength[id] = -1;
+            if (releasedCount == released.length) {
+                released = Arrays.copyOf(released, releasedCount * 2);
+            }
+            released[releasedCount++] = id;
+            size--;
+        }
+
+        // Releases every id; ids are handed out from 0 again
+        void clear() {
+            Arrays.fill(slots, 0);
+            releasedCount = 0;
+            idLimit = 0;
+            size = 0;
+        }
+
+        String hashtag(int id) {
+            return new String(keys[id], 0, keyLength[id], StandardCharsets.US_ASCII);
+        }
+
+        int hash(int id) {
+            return keyHash[id];
+        }
+
+        // Compares two hashtags like String.compareTo, without creating Strings
+        int compare(int a, int b) {
+            int common = Math.min(keyLength[a], keyLength[b]);
+            for (int i = 0; i < common; i++) {
+                if (keys[a][i] != keys[b][i]) return keys[a][i] - keys[b][i];
+            }
+            return keyLength[a] - keyLength[b];
+        }
+
+        // Approximate number of bytes held, hashtag characters included
+        long memoryBytes() {
+            long bytes = (long) slots.length * Integer.BYTES + (long) released.length * Integer.BYTES
+                    + (long) keyLength.length * (2 * Integer.BYTES + 8);
+            for (int id = 0; id < idLimit; id++) {
+                if (keys[id] != null) bytes += 16 + keys[id].length; // Array header and characters
+            }
+            return bytes;
+        }
+
+        private boolean keyEquals(int id, CharSequence source, int from) {
+            byte[] key = keys[id];
+            for (int i = 0; i < keyLength[id]; i++) {
+                if (key[i] != source.charAt(from + i)) return false;
+            }
+            return true;
+        }
+
+        private void insertSlot(int id) {
+            int mask = slots.length - 1;
+            int slot = HashtagCounter.mix(keyHash[id]) & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = id + 1;
+        }
 
+        private void rehash() {
+            slots = new int[slots.length * 2];
+            for (int id = 0; id < idLimit; id++) {
+                if (keyLength[id] >= 0) insertSlot(id);
+            }
+        }
+    }
+
+    // Approximate top-k hashtags in fixed memory: returns the k most frequent hashtags with
+    // their estimated counts, ordered like getTopHashtags. The counters and sketch size bound memory
+    // regardless of how many distinct hashtags the month contains.
+    public static List<HashtagEstimate> getTopHashtagsApproximate(List<Tweet> tweets, String monthYear, int k, int counters) {
+        HeavyHitters hashtagCount = new HeavyHitters(counters, 2048, 4);
         for (Tweet tweet : tweets) {
-            if (tweet.tweetDate.startsWith(monthYear)) { // Filter for February 2024
-                Matcher matcher = hashtagPattern.matcher(tweet.tweetText);
-                while (matcher.find()) {
-                    String hashtag = matcher.group();
-                    hashtagCount.put(hashtag, hashtagCount.getOrDefault(hashtag, 0) + 1);
+            if (tweet.tweetDate.startsWith(monthYear)) { // Filter for the requested month
+                hashtagCount.addAll(tweet.tweetText);
+            }
+        }
+        return hashtagCount.top(k);
+    }
+
+    // Approximate count of one hashtag: the true count lies in [count - error, count]
+    static class HashtagEstimate {
+        final String hashtag;
+        final long count;
+        final long error;
+
+        HashtagEstimate(String hashtag, long count, long error) {
+            this.hashtag = hashtag;
+            this.count = count;
+            this.error = error;
+        }
+
+        @Override
+        public String toString() {
+            return hashtag + "=" + count + " (-" + error + ")";
+        }
+    }
+
+    // Space-Saving summary backed by a Count-Min Sketch.
+    // Space-Saving keeps a fixed number of counters; an untracked hashtag takes over the smallest
+    // counter, inheriting its count as error, so every tracked count c with error e satisfies
+    // c - e <= true count <= c. The sketch gives a second upper bound that is tighter for hashtags
+    // that took over a large counter. Both structures are mergeable, so per-shard summaries can be
+    // combined and the bounds still hold.
+    static class HeavyHitters {
+        private final int capacity;
+
+        // Space-Saving counters, indexed by hashtag id. Ids stay below capacity: a counter taken
+        // over releases its id, and the new hashtag gets that id back. The heap orders the ids
+        // by count, smallest first.
+        private final HashtagIds ids = new HashtagIds();
+        private final long[] counts;
+        private final long[] errors;
+        private final int[] heap;
+        private final int[] heapPosition;
+        private int size = 0;
+
+        // Count-Min Sketch: depth rows of width counters
+        private final int width;
+        private final int depth;
+        private final long[] sketch;
+        private long total = 0;
+
+        HeavyHitters(int capacity, int width, int depth) {
+            this.capacity = capacity;
+            this.counts = new long[capacity];
+            this.errors = new long[capacity];
+            this.heap = new int[capacity];
+            this.heapPosition = new int[capacity];
+            this.width = width;
+            this.depth = depth;
+            this.sketch = new long[width * depth];
+        }
+
+        // Scans a tweet and counts every hashtag in it
+        void addAll(CharSequence tweetText) {
+            int n = tweetText.length();
+            int i = 0;
+            while (i < n) {
+                if (tweetText.charAt(i) == '#') {
+                    int end = HashtagCounter.hashtagEnd(tweetText, i, n);
+                    if (end > i + 1) {
+                        add(tweetText, i, end - i, HashtagCounter.hashOf(tweetText, i, end), 1);
+                        i = end;
+                        continue;
+                    }
+                }
+                i++;
+            }
+        }
+
+        void add(String hashtag, long amount) {
+            add(hashtag, 0, hashtag.length(), hashtag.hashCode(), amount);
+        }
+
+        // Counts the hashtag source[from, from + len) whose String hash is h
+        void add(CharSequence source, int from, int len, int h, long amount) {
+            total += amount;
+            for (int row = 0; row < depth; row++) {
+                sketch[cell(h, row)] += amount;
+            }
+            if (capacity == 0) return;
+
+            int id = ids.find(source, from, len, h);
+            if (id >= 0) {
+                counts[id] += amount;
+                siftDown(heapPosition[id]);
+            } else if (size < capacity) {
+                put(source, from, len, h, amount, 0);
+            } else {
+                // Take over the smallest counter
+                int smallest = heap[0];
+                long minimum = counts[smallest];
+                ids.remove(smallest);
+                id = ids.add(source, from, len, h); // The id just released
+                counts[id] = minimum + amount;
+                errors[id] = minimum;
+                heap[0] = id;
+                heapPosition[id] = 0;
+                siftDown(0);
+            }
+        }
+
+        // Adds the counts of another summary with the same sizes to this one. A hashtag missing
+        // from one side is charged that side's smallest count, both as count and as error.
+        void merge(HeavyHitters other) {
+            if (other.width != width || other.depth != depth || other.capacity != capacity) {
+                throw new IllegalArgumentException("Summaries must have the same dimensions to be merged.");
+            }
+            for (int i = 0; i < sketch.length; i++) {
+                sketch[i] += other.sketch[i];
+            }
+            total += other.total;
+
+            long thisMinimum = size < capacity ? 0 : counts[heap[0]];
+            long otherMinimum = other.size < other.capacity ? 0 : other.counts[other.heap[0]];
+            Map<String, long[]> merged = new HashMap<>();
+            for (int i = 0; i < size; i++) {
+                int id = heap[i];
+                merged.put(ids.hashtag(id), new long[] {counts[id] + otherMinimum, errors[id] + otherMinimum});
+            }
+            for (int i = 0; i < other.size; i++) {
+                int id = other.heap[i];
+                String key = other.ids.hashtag(id);
+                long[] entry = merged.get(key);
+                if (entry == null) {
+                    merged.put(key, new long[] {other.counts[id] + thisMinimum, other.errors[id] + thisMinimum});
+                } else {
+                    entry[0] += other.counts[id] - otherMinimum;
+                    entry[1] += other.errors[id] - otherMinimum;
+                }
+            }
+
+            // Keep the largest counters
+            List<Map.Entry<String, long[]>> entries = new ArrayList<>(merged.entrySet());
+            entries.sort((a, b) -> Long.compare(b.getValue()[0], a.getValue()[0]));
+            ids.clear();
+            size = 0;
+            for (Map.Entry<String, long[]> entry : entries.subList(0, Math.min(capacity, entries.size()))) {
+                String key = entry.getKey();
+                put(key, 0, key.length(), key.hashCode(), entry.getValue()[0], entry.getValue()[1]);
+            }
+        }
+
+        // Upper bound on the count of a hashtag from the sketch alone
+        long sketchEstimate(String hashtag) {
+            return sketchEstimate(hashtag.hashCode());
+        }
+
+        private long sketchEstimate(int h) {
+            long estimate = Long.MAX_VALUE;
+            for (int row = 0; row < depth; row++) {
+                estimate = Math.min(estimate, sketch[cell(h, row)]);
+            }
+            return estimate;
+        }
+
+        // The k highest counts, ordered by count (descending), then by hashtag (descending)
+        List<HashtagEstimate> top(int k) {
+            long[] upper = new long[capacity];
+            List<Integer> order = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                int id = heap[i];
+                upper[id] = Math.min(counts[id], sketchEstimate(ids.hash(id)));
+                order.add(id);
+            }
+            order.sort((a, b) -> {
+                if (upper[a] != upper[b]) {
+                    return Long.compare(upper[b], upper[a]); // Sort by count descending
                 }
+                return ids.compare(b, a); // Sort by hashtag name descending
+            });
+            List<HashtagEstimate> estimates = new ArrayList<>();
+            for (int id : order.subList(0, Math.min(k, size))) {
+                long lower = counts[id] - errors[id];
+                estimates.add(new HashtagEstimate(ids.hashtag(id), upper[id], upper[id] - lower));
             }
+            return estimates;
         }
 
-        // Sort hashtags by count (descending), then by name (descending)
-        List<Map.Entry<String, Integer>> sortedHashtags = new ArrayList<>(hashtagCount.entrySet());
-        sortedHashtags.sort((a, b) -> {
-            if (!a.getValue().equals(b.getValue())) {
-                return b.getValue() - a.getValue(); // Sort by count descending
+        // Approximate number of bytes held, hashtag characters included
+        long memoryBytes() {
+            return (long) sketch.length * Long.BYTES + (long) capacity * (2 * Long.BYTES + 2 * Integer.BYTES)
+                    + ids.memoryBytes();
+        }
+
+        private int cell(int h, int row) {
+            // Double hashing: row i uses h1 + i * h2
+            int h2 = h * 0x9E3779B9;
+            h2 ^= h2 >>> 16;
+            int combined = h + row * (h2 | 1);
+            return row * width + Math.floorMod(combined, width);
+        }
+
+        // Starts a new counter at the end of the heap
+        private void put(CharSequence source, int from, int len, int h, long count, long error) {
+            int id = ids.add(source, from, len, h);
+            counts[id] = count;
+            errors[id] = error;
+            heap[size] = id;
+            heapPosition[id] = size;
+            siftUp(size++);
+        }
+
+        private void siftUp(int child) {
+            int id = heap[child];
+            while (child > 0) {
+                int parent = (child - 1) >>> 1;
+                if (counts[heap[parent]] <= counts[id]) break;
+                heap[child] = heap[parent];
+                heapPosition[heap[child]] = child;
+                child = parent;
             }
-            return b.getKey().compareTo(a.getKey()); // Sort by hashtag name descending
-        });
+            heap[child] = id;
+            heapPosition[id] = child;
+        }
 
-        // Return top 3 trending hashtags
-        return sortedHashtags.subList(0, Math.min(3, sortedHashtags.size()));
+        private void siftDown(int parent) {
+            int id = heap[parent];
+            while (true) {
+                int child = 2 * parent + 1;
+                if (child >= size) break;
+                if (child + 1 < size && counts[heap[child + 1]] < counts[heap[child]]) child++;
+                if (counts[id] <= counts[heap[child]]) break;
+                heap[parent] = heap[child];
+                heapPosition[heap[parent]] = parent;
+                parent = child;
+            }
+            heap[parent] = id;
+            heapPosition[id] = parent;
+        }
+    }
+
+    // Sliding-window trending hashtags over a live stream of tweets.
+    // Time is cut into buckets held in a ring (a time wheel) covering the window. Each bucket
+    // keeps one (hashtag id, count) pair per hashtag it received; when the wheel turns, the
+    // expired bucket's counts are subtracted from the window counts instead of recounting the
+    // window. A hashtag whose window count drops to zero leaves the heap and its id is released,
+    // so memory follows the hashtags live in the window. Window counts are kept in an indexed
+    // max-heap, so top(k) explores only the top of the heap in O(k log k).
+    static class TrendingWindow {
+        private final long bucketMillis;
+        private final int[][] bucketIds;    // Hashtags of each bucket of the ring
+        private final int[][] bucketCounts; // Their counts in that bucket
+        private final int[] bucketSizes;
+        private long newestBucket = Long.MIN_VALUE;
+
+        // Hashtags in the window, by id
+        private final HashtagIds ids = new HashtagIds();
+        private int[] windowCount = new int[16];
+        private long[] lastBucket = new long[16]; // Bucket of the id's latest pair
+        private int[] lastPair = new int[16];     // Index of that pair in its bucket
+
+        // Indexed max-heap of hashtag ids on (window count, hashtag)
+        private int[] heap = new int[16];
+        private int[] heapPosition = new int[16];
+        private int heapSize = 0;
+
+        TrendingWindow(long bucketMillis, int buckets) {
+            this.bucketMillis = bucketMillis;
+            this.bucketIds = new int[buckets][16];
+            this.bucketCounts = new int[buckets][16];
+            this.bucketSizes = new int[buckets];
+        }
+
+        // Window of the given number of days with one bucket per day, for tweets that only carry a date
+        static TrendingWindow ofDays(int days) {
+            return new TrendingWindow(86_400_000L, days);
+        }
+
+        // Number of distinct hashtags in the window
+        int size() {
+            return ids.size();
+        }
+
+        // Adds a tweet at the start of its tweetDate (yyyy-MM-dd)
+        void add(Tweet tweet) {
+            add(tweet, java.time.LocalDate.parse(tweet.tweetDate).toEpochDay() * 86_400_000L);
+        }
+
+        // Adds a tweet seen at the given time; tweets older than the window are ignored
+        void add(Tweet tweet, long timestampMillis) {
+            long bucket = Math.floorDiv(timestampMillis, bucketMillis);
+            advanceTo(bucket);
+            if (bucket <= newestBucket - bucketIds.length) return; // Already expired
+
+            String text = tweet.tweetText;
+            int n = text.length();
+            int i = 0;
+            while (i < n) {
+                if (text.charAt(i) == '#') {
+                    int end = HashtagCounter.hashtagEnd(text, i, n);
+                    if (end > i + 1) {
+                        int h = HashtagCounter.hashOf(text, i, end);
+                        int id = ids.find(text, i, end - i, h);
+                        if (id < 0) id = enter(ids.add(text, i, end - i, h));
+                        record(bucket, id);
+                        i = end;
+                        continue;
+                    }
+                }
+                i++;
+            }
+        }
+
+        // Moves the window forward so that bucket is the newest one, expiring what falls out
+        void advanceTo(long bucket) {
+            if (newestBucket == Long.MIN_VALUE) {
+                newestBucket = bucket;
+                return;
+            }
+            if (bucket <= newestBucket) return;
+            long steps = Math.min(bucket - newestBucket, bucketIds.length);
+            for (long b = bucket - steps + 1; b <= bucket; b++) {
+                expire((int) Math.floorMod(b, (long) bucketIds.length));
+            }
+            newestBucket = bucket;
+        }
+
+        // The k hashtags with the highest counts in the window, ordered by count (descending),
+        // then by hashtag (descending). The answer lies in the top of the heap, so a second small
+        // heap of candidate positions walks down from the root: O(k log k).
+        List<Map.Entry<String, Integer>> top(int k) {
+            List<Map.Entry<String, Integer>> result = new ArrayList<>();
+            int[] frontier = new int[2 * Math.max(k, 0) + 1];
+            int frontierSize = 0;
+            if (heapSize > 0 && k > 0) frontier[frontierSize++] = 0;
+            while (result.size() < k && frontierSize > 0) {
+                // Take the best candidate
+                int position = frontier[0];
+                frontier[0] = frontier[--frontierSize];
+                siftDownFrontier(frontier, frontierSize);
+                int id = heap[position];
+
+                result.add(Map.entry(ids.hashtag(id), windowCount[id]));
+                for (int child = 2 * position + 1; child <= 2 * position + 2 && child < heapSize; child++) {
+                    frontier[frontierSize++] = child;
+                    siftUpFrontier(frontier, frontierSize - 1);
+                }
+            }
+            return result;
+        }
+
+        private void siftUpFrontier(int[] frontier, int child) {
+            while (child > 0) {
+                int parent = (child - 1) >>> 1;
+                if (!above(heap[frontier[child]], heap[frontier[parent]])) break;
+                int swap = frontier[parent];
+                frontier[parent] = frontier[child];
+                frontier[child] = swap;
+                child = parent;
+            }
+        }
+
+        private void siftDownFrontier(int[] frontier, int size) {
+            int parent = 0;
+            while (true) {
+                int child = 2 * parent + 1;
+                if (child >= size) break;
+                if (child + 1 < size && above(heap[frontier[child + 1]], heap[frontier[child]])) child++;
+                if (!above(heap[frontier[child]], heap[frontier[parent]])) break;
+                int swap = frontier[parent];
+                frontier[parent] = frontier[child];
+                frontier[child] = swap;
+                parent = child;
+            }
+        }
+
+        // Puts a newly added hashtag at the end of the heap with a zero count
+        private int enter(int id) {
+            if (id >= windowCount.length) {
+                int capacity = Math.max(windowCount.length * 2, ids.idLimit());
+                windowCount = Arrays.copyOf(windowCount, capacity);
+                lastBucket = Arrays.copyOf(lastBucket, capacity);
+                lastPair = Arrays.copyOf(lastPair, capacity);
+                heapPosition = Arrays.copyOf(heapPosition, capacity);
+                heap = Arrays.copyOf(heap, capacity);
+            }
+            windowCount[id] = 0;
+            lastBucket[id] = Long.MIN_VALUE;
+            heap[heapSize] = id;
+            heapPosition[id] = heapSize++;
+            return id;
+        }
+
+        // Counts one occurrence in a bucket, in the hashtag's pair there if it already has one
+        private void record(long bucket, int id) {
+            int slot = (int) Math.floorMod(bucket, (long) bucketIds.length);
+            if (lastBucket[id] == bucket) {
+                bucketCounts[slot][lastPair[id]]++;
+            } else {
+                int pair = bucketSizes[slot]++;
+                if (pair == bucketIds[slot].length) {
+                    bucketIds[slot] = Arrays.copyOf(bucketIds[slot], pair * 2);
+                    bucketCounts[slot] = Arrays.copyOf(bucketCounts[slot], pair * 2);
+                }
+                bucketIds[slot][pair] = id;
+                bucketCounts[slot][pair] = 1;
+                lastBucket[id] = bucket;
+                lastPair[id] = pair;
+            }
+            windowCount[id]++;
+            siftUp(heapPosition[id]);
+        }
+
+        private void expire(int slot) {
+            int[] expiredIds = bucketIds[slot];
+            int[] expiredCounts = bucketCounts[slot];
+            for (int i = 0; i < bucketSizes[slot]; i++) {
+                int id = expiredIds[i];
+                windowCount[id] -= expiredCounts[i];
+                if (windowCount[id] == 0) {
+                    leave(id);
+                } else {
+                    siftDown(heapPosition[id]);
+                }
+            }
+            bucketSizes[slot] = 0;
+        }
+
+        // Takes a hashtag that is no longer in the window out of the heap and releases its id
+        private void leave(int id) {
+            int position = heapPosition[id];
+            int last = heap[--heapSize];
+            if (last != id) {
+                heap[position] = last;
+                heapPosition[last] = position;
+                siftDown(position);
+                siftUp(heapPosition[last]);
+            }
+            ids.remove(id);
+        }
+
+        private boolean above(int a, int b) {
+            if (windowCount[a] != windowCount[b]) return windowCount[a] > windowCount[b];
+            return ids.compare(a, b) > 0;
+        }
+
+        private void siftUp(int child) {
+            int id = heap[child];
+            while (child > 0) {
+                int parent = (child - 1) >>> 1;
+                if (!above(id, heap[parent])) break;
+                heap[child] = heap[parent];
+                heapPosition[heap[child]] = child;
+                child = parent;
+            }
+            heap[child] = id;
+            heapPosition[id] = child;
+        }
+
+        private void siftDown(int parent) {
+            int id = heap[parent];
+            while (true) {
+                int child = 2 * parent + 1;
+                if (child >= heapSize) break;
+                if (child + 1 < heapSize && above(heap[child + 1], heap[child])) child++;
+                if (!above(heap[child], id)) break;
+                heap[parent] = heap[child];
+                heapPosition[heap[parent]] = parent;
+                parent = child;
+            }
+            heap[parent] = id;
+            heapPosition[id] = parent;
+        }
+    }
+
+    // Measures TrendingWindow throughput on a synthetic stream with one-second buckets
+    private static void benchmarkWindow(int tweetCount, int vocabulary) {
+        java.util.Random random = new java.util.Random(11);
+        Tweet[] tweets = new Tweet[1 << 16];
+        for (int i = 0; i < tweets.length; i++) {
+            tweets[i] = new Tweet(i, i, "Live update #Tag" + random.nextInt(vocabulary) + " and #Tag" + random.nextInt(vocabulary / 100 + 1), "2024-02-01");
+        }
+        TrendingWindow window = new TrendingWindow(1000, 300); // Last 5 minutes
+        long start = System.nanoTime();
+        for (int i = 0; i < tweetCount; i++) {
+            window.add(tweets[i & (tweets.length - 1)], i / 100L); // 100k tweets per simulated second
+        }
+        long nanos = System.nanoTime() - start;
+        List<Map.Entry<String, Integer>> top = window.top(3);
+        System.out.printf("TrendingWindow: %.2f M tweets/s, top %s%n", tweetCount / (nanos / 1e9) / 1e6, top);
+    }
+
+    // Compares the approximate mode against exact counting on a Zipf-distributed tweet stream
+    private static void benchmark(int tweetCount, int vocabulary, int counters) {
+        // Cumulative Zipf(1.1) distribution over the hashtag ranks
+        double[] cumulative = new double[vocabulary];
+        double sum = 0;
+        for (int rank = 0; rank < vocabulary; rank++) {
+            sum += 1 / Math.pow(rank + 1, 1.1);
+            cumulative[rank] = sum;
+        }
+        java.util.Random random = new java.util.Random(7);
+        List<Tweet> tweets = new ArrayList<>(tweetCount);
+        for (int i = 0; i < tweetCount; i++) {
+            StringBuilder text = new StringBuilder("Trending now");
+            for (int tags = 1 + random.nextInt(3); tags > 0; tags--) {
+                int rank = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+                text.append(" #Tag").append(rank < 0 ? -rank - 1 : rank);
+            }
+            tweets.add(new Tweet(i, i, text.toString(), "2024-02-01"));
+        }
+
+        long start = System.nanoTime();
+        HashtagCounter exact = new HashtagCounter();
+        for (Tweet tweet : tweets) {
+            exact.addAll(tweet.tweetText);
+        }
+        List<Map.Entry<String, Integer>> exactTop = exact.top(10);
+        long exactNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        HeavyHitters approximate = new HeavyHitters(counters, 2048, 4);
+        for (Tweet tweet : tweets) {
+            approximate.addAll(tweet.tweetText);
+        }
+        List<HashtagEstimate> approximateTop = approximate.top(10);
+        long approximateNanos = System.nanoTime() - start;
+
+        int found = 0;
+        double worstRelativeError = 0;
+        for (int i = 0; i < exactTop.size(); i++) {
+            for (HashtagEstimate estimate : approximateTop) {
+                if (estimate.hashtag.equals(exactTop.get(i).getKey())) {
+                    found++;
+                    double exactCount = exactTop.get(i).getValue();
+                    worstRelativeError = Math.max(worstRelativeError, Math.abs(estimate.count - exactCount) / exactCount);
+                }
+            }
+        }
+        System.out.printf("Exact:       %5d ms, %d distinct hashtags (~%d KB)%n", exactNanos / 1_000_000,
+                exact.size(), exact.memoryBytes() / 1024);
+        System.out.printf("Approximate: %5d ms, %d counters (~%d KB), top-10 recall %d/10, worst relative error %.4f%n",
+                approximateNanos / 1_000_000, counters, approximate.memoryBytes() / 1024, found, worstRelativeError);
+    }
+
+    // Read-only CharSequence over ASCII bytes, indexed by absolute buffer position
+    static class AsciiView implements CharSequence {
+        private final ByteBuffer bytes;
+
+        AsciiView(ByteBuffer bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) (bytes.get(index) & 0xFF);
+        }
+
+        @Override
+        public int length() {
+            return bytes.limit();
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            StringBuilder copy = new StringBuilder(end - start);
+            for (int i = start; i < end; i++) {
+                copy.append(charAt(i));
+            }
+            return copy;
+        }
     }
 }
 
@@ -15,6 +15,20 @@ Constraints:
  The threads should be synchronized to prevent race conditions and ensure correct output. 
  The NumberPrinter class is already provided and cannot be modified.  */
 
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongToIntFunction;
+
 class NumberPrinter {
   public void printZero() {
       System.out.print(0);
@@ -30,11 +44,38 @@ class NumberPrinter {
 }
 
 class ThreadController {
+  private static final int ZERO = 0, EVEN = 1, ODD = 2;
+
+  // Step 2i - 2 prints the i-th zero, step 2i - 1 prints the number i
+  private final TurnSequencer sequencer;
+
+  public ThreadController(int n) {
+      this.sequencer = new TurnSequencer(3, 2L * n,
+              step -> step % 2 == 0 ? ZERO : ((step + 1) / 2 % 2 == 0 ? EVEN : ODD));
+  }
+
+  // If a printer throws, the other threads stop waiting and return
+  public void zero(NumberPrinter printer) {
+      while (sequencer.runNext(ZERO, (stage, step) -> printer.printZero())) { }
+  }
+
+  public void even(NumberPrinter printer) {
+      while (sequencer.runNext(EVEN, (stage, step) -> printer.printEven((int) ((step + 1) / 2)))) { }
+  }
+
+  public void odd(NumberPrinter printer) {
+      while (sequencer.runNext(ODD, (stage, step) -> printer.printOdd((int) ((step + 1) / 2)))) { }
+  }
+}
+
+// The original single-monitor coordination, kept as a baseline for the benchmark: every
+// number wakes all three threads with notifyAll()
+class MonitorThreadController {
   private int n;
   private int counter = 0; // Controls the sequence
   private final Object lock = new Object();
 
-  public ThreadController(int n) {
+  public MonitorThreadController(int n) {
       this.n = n;
   }
 
@@ -90,16 +131,213 @@ class ThreadController {
   }
 }
 
+// Strict ordered turns across any number of stages. A schedule function maps every step
+// 0, 1, 2, ... to the stage that owns it. The current step is a single atomic counter; a waiting
+// stage spins briefly and then parks in its own wait slot, and the stage that finishes a step
+// unparks only the owner of the next one, so there are no herd wake-ups. Works the same on
+// platform threads and on virtual threads, since it only relies on LockSupport park/unpark.
+class TurnSequencer {
+  private static final int SPINS = 100; // Busy checks before parking
+
+  private final long steps;
+  private final LongToIntFunction schedule;
+  private final AtomicLong turn = new AtomicLong(); // Next step to run
+  private final AtomicReferenceArray<Thread> waiters; // One wait slot per stage
+
+  public TurnSequencer(int stages, long steps, LongToIntFunction schedule) {
+      this.steps = steps;
+      this.schedule = schedule;
+      this.waiters = new AtomicReferenceArray<>(stages);
+  }
+
+  // Blocks until the current step belongs to stage and returns it, or returns -1 when all
+  // steps are done or the sequence was aborted. The caller must call done() after handling
+  // the step, or abort() if it cannot.
+  public long awaitTurn(int stage) {
+      // Register before checking the turn: either done() sees this thread, or this thread sees the new turn
+      waiters.set(stage, Thread.currentThread());
+      for (int spin = 0; ; spin++) {
+          long step = turn.get();
+          if (step >= steps) return -1;
+          if (schedule.applyAsInt(step) == stage) return step;
+          if (spin < SPINS) {
+              Thread.onSpinWait();
+          } else {
+              LockSupport.park(this); // Wakes up on unpark, or spuriously; the loop re-checks
+          }
+      }
+  }
+
+  // Hands the turn to the owner of the next step; after the last step every stage is released
+  public void done() {
+      long next = turn.incrementAndGet();
+      if (next < steps) {
+          unpark(schedule.applyAsInt(next));
+      } else {
+          for (int stage = 0; stage < waiters.length(); stage++) {
+              unpark(stage);
+          }
+      }
+  }
+
+  // Ends the sequence early: every stage waiting now or later gets -1 from awaitTurn
+  public void abort() {
+      turn.set(steps);
+      for (int stage = 0; stage < waiters.length(); stage++) {
+          unpark(stage);
+      }
+  }
+
+  // Waits for the next step of stage, runs action for it and hands the turn on. Returns false
+  // once there are no more steps. If action throws, the sequence is aborted before the
+  // exception propagates, so no other stage waits for a turn that never comes.
+  public boolean runNext(int stage, StageAction action) {
+      long step = awaitTurn(stage);
+      if (step < 0) return false;
+      try {
+          action.run(stage, step);
+      } catch (RuntimeException | Error e) {
+          abort();
+          throw e;
+      }
+      done();
+      return true;
+  }
+
+  // Runs one thread per stage from the factory; each calls action for every step it owns in
+  // turn order. Returns once all steps are done. If an action throws, the remaining steps are
+  // skipped and run() rethrows the first failure once every thread has stopped.
+  public void run(ThreadFactory factory, StageAction action) throws InterruptedException {
+      Thread[] threads = new Thread[waiters.length()];
+      AtomicReference<Throwable> failure = new AtomicReference<>();
+      for (int stage = 0; stage < threads.length; stage++) {
+          int owner = stage;
+          threads[stage] = factory.newThread(() -> {
+              try {
+                  while (runNext(owner, action)) { }
+              } catch (RuntimeException | Error e) {
+                  failure.compareAndSet(null, e);
+              }
+          });
+      }
+      for (Thread thread : threads) {
+          thread.start();
+      }
+      for (Thread thread : threads) {
+          thread.join();
+      }
+      Throwable thrown = failure.get();
+      if (thrown instanceof RuntimeException) throw (RuntimeException) thrown;
+      if (thrown instanceof Error) throw (Error) thrown;
+  }
+
+  private void unpark(int stage) {
+      Thread waiter = waiters.get(stage);
+      if (waiter != null) {
+          LockSupport.unpark(waiter);
+      }
+  }
+
+  // Work done by a stage for one of its steps
+  interface StageAction {
+      void run(int stage, long step);
+  }
+}
+
+// Stream installed as System.out that lets single threads print somewhere else. NumberPrinter
+// always prints to System.out, so a thread that registers a sink has its output written there;
+// every other thread writes to the stream System.out held before installation, as before.
+// Installed once and left in place, so runs never swap System.out under each other.
+final class ThreadOutput extends OutputStream {
+  private final PrintStream console;
+  private final ThreadLocal<OutputStream> sink = new ThreadLocal<>();
+
+  private ThreadOutput(PrintStream console) {
+      this.console = console;
+  }
+
+  // The installed router, installing it over the current System.out if needed
+  static synchronized ThreadOutput install() {
+      if (System.out instanceof RoutedStream) {
+          return ((RoutedStream) System.out).router;
+      }
+      ThreadOutput router = new ThreadOutput(System.out);
+      System.setOut(new RoutedStream(router));
+      return router;
+  }
+
+  PrintStream console() {
+      return console;
+  }
+
+  // Wraps a task so that everything it prints to System.out goes to sink
+  Runnable redirect(Runnable task, OutputStream sink) {
+      return () -> {
+          this.sink.set(sink);
+          try {
+              task.run();
+          } finally {
+              this.sink.remove();
+          }
+      };
+  }
+
+  private OutputStream target() {
+      OutputStream target = sink.get();
+      return target != null ? target : console;
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+      target().write(b);
+  }
+
+  @Override
+  public void write(byte[] bytes, int offset, int length) throws IOException {
+      target().write(bytes, offset, length);
+  }
+
+  @Override
+  public void flush() throws IOException {
+      target().flush();
+  }
+
+  // Auto-flushing like the standard System.out
+  private static final class RoutedStream extends PrintStream {
+      final ThreadOutput router;
+
+      RoutedStream(ThreadOutput router) {
+          super(router, true);
+          this.router = router;
+      }
+  }
+}
+
 public class Q6a {
+  // Size of the buffer installed by runThreadsBuffered
+  private static final int OUTPUT_BUFFER_BYTES = 1 << 16;
+
   public static void main(String[] args) {
       int n = 5; // Modify as needed
       NumberPrinter printer = new NumberPrinter();
       ThreadController controller = new ThreadController(n);
 
-      Thread zeroThread = new Thread(() -> controller.zero(printer));
-      Thread evenThread = new Thread(() -> controller.even(printer));
-      Thread oddThread = new Thread(() -> controller.odd(printer));
+      runThreads(() -> controller.zero(printer), () -> controller.even(printer), () -> controller.odd(printer));
+
+      // Run with "benchmark [n]" to compare the coordination cost of both controllers
+      if (args.length > 0 && args[0].equals("benchmark")) {
+          System.out.println();
+          benchmark(args.length > 1 ? Integer.parseInt(args[1]) : 10_000_000);
+      }
+  }
+
+  // Starts the three threads and waits for them; returns the elapsed nanoseconds
+  static long runThreads(Runnable zero, Runnable even, Runnable odd) {
+      Thread zeroThread = new Thread(zero);
+      Thread evenThread = new Thread(even);
+      Thread oddThread = new Thread(odd);
 
+      long start = System.nanoTime();
       zeroThread.start();
       evenThread.start();
       oddThread.start();
@@ -111,5 +349,79 @@ public class Q6a {
       } catch (InterruptedException e) {
           Thread.currentThread().interrupt();
       }
+      return System.nanoTime() - start;
+  }
+
+  // Same as runThreads, but the three threads print into a large buffer of their own, so
+  // NumberPrinter's System.out.print calls no longer reach the console one number at a time.
+  // The buffer is flushed into the console in big chunks and once more at the end, so the bytes
+  // written are exactly the same. Other threads, and other runs, keep their own output.
+  static long runThreadsBuffered(Runnable zero, Runnable even, Runnable odd) {
+      ThreadOutput output = ThreadOutput.install();
+      OutputStream buffer = new BufferedOutputStream(output.console(), OUTPUT_BUFFER_BYTES);
+      long start = System.nanoTime();
+      try {
+          runThreads(output.redirect(zero, buffer), output.redirect(even, buffer), output.redirect(odd, buffer));
+      } finally {
+          try {
+              buffer.flush();
+          } catch (IOException e) {
+              System.err.println("Error flushing output: " + e.getMessage());
+          }
+      }
+      return System.nanoTime() - start;
+  }
+
+  // Times both controllers with a silent printer, so only coordination is measured,
+  // then times ThreadController printing to a file through System.out with and without the buffer
+  private static void benchmark(int n) {
+      NumberPrinter silent = new NumberPrinter() {
+          @Override public void printZero() { }
+          @Override public void printEven(int num) { }
+          @Override public void printOdd(int num) { }
+      };
+      MonitorThreadController monitor = new MonitorThreadController(n);
+      long monitorNanos = runThreads(() -> monitor.zero(silent), () -> monitor.even(silent), () -> monitor.odd(silent));
+      ThreadController controller = new ThreadController(n);
+      long controllerNanos = runThreads(() -> controller.zero(silent), () -> controller.even(silent), () -> controller.odd(silent));
+      System.out.printf("n = %d: monitor %.1f M steps/s, park/unpark %.1f M steps/s%n", n,
+              2.0 * n / monitorNanos * 1000, 2.0 * n / controllerNanos * 1000);
+
+      // Round-robin TurnSequencer scaling with the number of stages
+      for (int stageCount : new int[] {3, 4, 8, 16, 32, 64}) {
+          TurnSequencer sequencer = new TurnSequencer(stageCount, 2L * n, step -> (int) (step % stageCount));
+          long start = System.nanoTime();
+          try {
+              sequencer.run(Thread::new, (stage, step) -> { });
+          } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+              return;
+          }
+          System.out.printf("TurnSequencer, %2d stages: %.1f M steps/s%n", stageCount, 2.0 * n / (System.nanoTime() - start) * 1000);
+      }
+
+      NumberPrinter printer = new NumberPrinter();
+      PrintStream console = System.out;
+      try {
+          Path file = Files.createTempFile("q6a", ".txt");
+          try (OutputStream out = new FileOutputStream(file.toFile())) {
+              // Same shape as the default System.out: a small buffer that is flushed constantly
+              System.setOut(new PrintStream(new BufferedOutputStream(out, 128), true));
+              ThreadController direct = new ThreadController(n);
+              long directNanos = runThreads(() -> direct.zero(printer), () -> direct.even(printer), () -> direct.odd(printer));
+              System.out.flush();
+              ThreadController buffered = new ThreadController(n);
+              long bufferedNanos = runThreadsBuffered(() -> buffered.zero(printer), () -> buffered.even(printer), () -> buffered.odd(printer));
+              System.out.flush();
+              System.setOut(console);
+              System.out.printf("Coordination: %d ms; I/O on top: %d ms direct, %d ms buffered%n", controllerNanos / 1_000_000,
+                      (directNanos - controllerNanos) / 1_000_000, (bufferedNanos - controllerNanos) / 1_000_000);
+          } finally {
+              System.setOut(console);
+              Files.delete(file);
+          }
+      } catch (IOException e) {
+          System.err.println("Benchmark output failed: " + e.getMessage());
+      }
   }
 }
@@ -25,28 +25,106 @@ Implement a mechanism to manage the queue of URLs to be crawled, such as a prior
 breadth-first search algorithm. 
 By completing these tasks, you will create a multithreaded web crawler that can efficiently crawl large 
 numbers of web page */
+import com.sun.net.httpserver.HttpServer;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
-import java.io.FileWriter;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.Flushable;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
 import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URISyntaxException;
 import java.net.URL;
-import java.util.HashSet;
-import java.util.LinkedList;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+import java.util.function.LongSupplier;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
 
 public class Q6b {
 
     // Inner class for the multithreaded web crawler
     public static class MultithreadedWebCrawler {
 
-        // Data structure to store URLs to be crawled
-        private final Queue<String> urlQueue = new LinkedList<>();
-        private final Set<String> visitedUrls = new HashSet<>();
+        // Data structure to store URLs to be crawled. A FIFO queue gives breadth-first order:
+        // every page at depth d is queued before any page at depth d + 1.
+        private final Queue<QueuedUrl> urlQueue = new ConcurrentLinkedQueue<>();
+
+        // URLs are claimed here before they are queued, so each URL is fetched at most once
+        private final Set<String> visitedUrls = ConcurrentHashMap.newKeySet();
+        private final AtomicInteger claimedPages = new AtomicInteger();
+
+        // With a state directory, the frontier and visited set live on disk in a CrawlState
+        // instead of urlQueue and visitedUrls, and the crawl resumes from its last checkpoint
+        private Path stateDirectory;
+        private CrawlState state;
+        private long checkpointIntervalNanos = TimeUnit.SECONDS.toNanos(30);
+
+        // Queued plus running pages; the crawl is finished when this drops to zero
+        private final AtomicInteger pending = new AtomicInteger();
+        private final AtomicInteger crawledPages = new AtomicInteger();
+        private volatile Thread scheduler;
+        private volatile boolean stopped;
 
         // Thread pool for concurrent crawling
         private final ExecutorService executorService;
@@ -54,26 +132,221 @@ public class Q6b {
         // Maximum number of threads
         private static final int MAX_THREADS = 10;
 
+        // Limits for the asynchronous fetch mode
+        private static final int MAX_IN_FLIGHT = 1000;
+        private static final int MAX_PER_HOST = 8;
+
+        // Per-host scheduling: URLs move from the frontier into per-host queues, refilled below
+        // SCHEDULED_LOW up to SCHEDULED_HIGH. URLs beyond a host's MAX_QUEUE_PER_HOST are held
+        // back behind its queue, up to MAX_HELD_BACK for all hosts; past that the frontier is
+        // not read until the URL in unscheduled fits.
+        private static final int SCHEDULED_LOW = 256, SCHEDULED_HIGH = 1024, MAX_QUEUE_PER_HOST = 512;
+        private static final int MAX_HELD_BACK = 4096;
+        private QueuedUrl unscheduled;
+        private boolean hostScheduling = true;
+        private long hostDelayNanos = 0;
+        private HostScheduler hostScheduler;
+
+        // How pages are fetched
+        public enum FetchMode {
+            BLOCKING, // One pool thread per fetch, HttpURLConnection
+            ASYNC     // HttpClient.sendAsync, thousands of fetches in flight
+        }
+
+        private final FetchMode fetchMode;
+
+        // Crawl limits: links further than maxDepth from the start URL are not followed, and at
+        // most maxPages URLs are fetched
+        private int maxDepth = Integer.MAX_VALUE;
+        private int maxPages = Integer.MAX_VALUE;
+
+        // Larger pages are abandoned as failed fetches, so the bodies held by MAX_IN_FLIGHT
+        // fetches stay bounded
+        private int maxPageBytes = 2 << 20;
+
+        // File the crawled pages are stored in, with their URL index next to it in ".idx"
+        private String contentFile = "crawled_pages.dat";
+        private boolean compressContent = false;
+
+        // Pages waiting for the storage writer; fetchers block when it is full
+        private static final int STORE_QUEUE = 256;
+        private PageStore store;
+
+        // Counters, per-stage latencies and traces of slow pages, written every metricsInterval
+        // to metricsFile when one is set
+        private final CrawlMetrics metrics = new CrawlMetrics(TimeUnit.SECONDS.toNanos(2));
+        private Path metricsFile;
+        private long metricsIntervalNanos = TimeUnit.SECONDS.toNanos(10);
+
+        private final String startUrl;
+
         // Constructor to initialize the crawler with a starting URL
         public MultithreadedWebCrawler(String startUrl) {
-            this.urlQueue.add(startUrl);
+            this(startUrl, FetchMode.BLOCKING);
+        }
+
+        public MultithreadedWebCrawler(String startUrl, FetchMode fetchMode) {
+            this.startUrl = startUrl;
+            this.fetchMode = fetchMode;
             this.executorService = Executors.newFixedThreadPool(MAX_THREADS);
         }
 
-        // Method to start crawling
-        public void startCrawling() {
-            while (!urlQueue.isEmpty()) {
-                String currentUrl = urlQueue.poll();
+        public void setContentFile(String contentFile) {
+            this.contentFile = contentFile;
+        }
+
+        // Deflate each stored page
+        public void setCompressContent(boolean compressContent) {
+            this.compressContent = compressContent;
+        }
+
+        public void setMaxDepth(int maxDepth) {
+            this.maxDepth = maxDepth;
+        }
+
+        public void setMaxPages(int maxPages) {
+            this.maxPages = maxPages;
+        }
+
+        // Keep the crawl state in this directory so the crawl can be resumed
+        public void setMaxPageBytes(int maxPageBytes) {
+            if (maxPageBytes < 1) throw new IllegalArgumentException("maxPageBytes must be positive: " + maxPageBytes);
+            this.maxPageBytes = maxPageBytes;
+        }
+
+        public void setStateDirectory(String stateDirectory) {
+            this.stateDirectory = Path.of(stateDirectory);
+        }
+
+        // Off: URLs are fetched in frontier order with no per-host limits
+        public void setHostScheduling(boolean hostScheduling) {
+            this.hostScheduling = hostScheduling;
+        }
+
+        // Minimum time between two fetches from the same host
+        public void setHostDelay(Duration delay) {
+            this.hostDelayNanos = delay.toNanos();
+        }
 
-                if (currentUrl == null || visitedUrls.contains(currentUrl)) {
-                    continue; // Skip already visited URLs
+        // Per-host fetch statistics of the last crawl
+        public List<String> getHostReport() {
+            return hostScheduler == null ? List.of() : hostScheduler.report();
+        }
+
+        public void setCheckpointInterval(Duration interval) {
+            this.checkpointIntervalNanos = interval.toNanos();
+        }
+
+        // Write a metrics report to this file periodically and when the crawl ends
+        public void setMetricsFile(String metricsFile) {
+            this.metricsFile = Path.of(metricsFile);
+        }
+
+        public void setMetricsInterval(Duration interval) {
+            this.metricsIntervalNanos = interval.toNanos();
+        }
+
+        // Pages taking longer than this from dispatch to finish are traced in the report
+        public void setSlowPageThreshold(Duration threshold) {
+            metrics.setSlowThreshold(threshold.toNanos());
+        }
+
+        public CrawlMetrics getMetrics() {
+            return metrics;
+        }
+
+        // Stops handing out URLs; pages already running finish, and with a state directory the
+        // rest of the frontier is checkpointed for the next startCrawling()
+        public void stop() {
+            stopped = true;
+            LockSupport.unpark(scheduler);
+        }
+
+        // Number of pages fetched and saved so far
+        public int getCrawledPages() {
+            return crawledPages.get();
+        }
+
+        // Method to start crawling. The calling thread schedules URLs from the frontier until it
+        // is empty and no page is still being fetched, since a running page may add more links.
+        public void startCrawling() {
+            try {
+                store = new PageStore(Path.of(contentFile), STORE_QUEUE, compressContent, false);
+                if (stateDirectory != null) {
+                    state = CrawlState.open(stateDirectory);
+                    claimedPages.set(state.getClaimedPages());
+                    crawledPages.set(state.getCrawledPages());
+                    pending.set((int) Math.min(Integer.MAX_VALUE, state.size()));
                 }
+            } catch (IOException e) {
+                System.err.println("Error opening crawl storage: " + e.getMessage());
+                return;
+            }
+            scheduler = Thread.currentThread();
+            enqueue(startUrl, 0); // Already claimed when resuming
 
-                // Submit the crawling task to the thread pool
-                executorService.submit(new CrawlTask(currentUrl));
+            // Bounds the pages handed out at once: the pool size for blocking fetches, and the
+            // in-flight limit for async ones, which also bounds their memory
+            int slotCount = fetchMode == FetchMode.ASYNC ? MAX_IN_FLIGHT : MAX_THREADS;
+            Semaphore slots = new Semaphore(slotCount);
+            AsyncFetcher fetcher = fetchMode == FetchMode.ASYNC ? new AsyncFetcher(MAX_PER_HOST, maxPageBytes) : null;
+            hostScheduler = hostScheduling ? new HostScheduler(slotCount, MAX_PER_HOST, MAX_QUEUE_PER_HOST, MAX_HELD_BACK, hostDelayNanos) : null;
+
+            metrics.gauge("in flight", () -> slotCount - slots.availablePermits());
+            metrics.gauge("host queues", () -> hostScheduler == null ? 0 : hostScheduler.size());
+            metrics.gauge("frontier", () -> Math.max(0, pending.get() - (slotCount - slots.availablePermits())
+                    - (hostScheduler == null ? 0 : hostScheduler.size())));
+            metrics.gauge("store queue", store::queued);
+            metrics.gauge("claimed", claimedPages::get);
+
+            long nextCheckpoint = System.nanoTime() + checkpointIntervalNanos;
+            long nextSnapshot = System.nanoTime() + metricsIntervalNanos;
+            try {
+                while (pending.get() > 0 && !stopped) {
+                    if (state != null && System.nanoTime() - nextCheckpoint >= 0) {
+                        checkpoint();
+                        nextCheckpoint = System.nanoTime() + checkpointIntervalNanos;
+                    }
+                    if (metricsFile != null && System.nanoTime() - nextSnapshot >= 0) {
+                        writeMetrics();
+                        nextSnapshot = System.nanoTime() + metricsIntervalNanos;
+                    }
+
+                    QueuedUrl next;
+                    if (hostScheduler == null) {
+                        next = pollFrontier();
+                        if (next == null) {
+                            LockSupport.parkNanos(this, 10_000_000L); // Woken by enqueue() or finished()
+                            continue;
+                        }
+                        slots.acquire();
+                    } else {
+                        if (hostScheduler.queued() < SCHEDULED_LOW) schedule();
+                        if (!slots.tryAcquire()) {
+                            LockSupport.parkNanos(this, 10_000_000L); // Woken by finished()
+                            continue;
+                        }
+                        long now = System.nanoTime();
+                        next = hostScheduler.next(now);
+                        // Every scheduled host is at its limit: look further into the frontier
+                        if (next == null && schedule()) next = hostScheduler.next(now);
+                        if (next == null) {
+                            slots.release();
+                            long wait = Math.min(10_000_000L, hostScheduler.nextReady() - now);
+                            LockSupport.parkNanos(this, Math.max(wait, 100_000L));
+                            continue;
+                        }
+                    }
+
+                    dispatch(next, slots, fetcher);
+                }
+            } catch (IOException e) {
+                System.err.println("Error reading crawl state: " + e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
             }
 
-            // Shutdown the executor service after all tasks are submitted
+            // Shutdown the executor service after all tasks are done
             executorService.shutdown();
             try {
                 // Wait for all threads to finish
@@ -83,40 +356,220 @@ public class Q6b {
             } catch (InterruptedException e) {
                 executorService.shutdownNow();
             }
+
+            // Async fetches are not pool tasks; wait for any still running after a stop
+            try {
+                slots.acquire(slotCount);
+                slots.release(slotCount); // Nothing in flight in the final metrics
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            // Record where the crawl stopped, then write out the pages still queued for storage
+            if (state != null) {
+                checkpoint();
+                try {
+                    state.close();
+                } catch (IOException e) {
+                    System.err.println("Error closing crawl state: " + e.getMessage());
+                }
+            }
+            try {
+                store.close();
+            } catch (IOException e) {
+                System.err.println("Error saving content: " + e.getMessage());
+            }
+            if (metricsFile != null) writeMetrics();
+        }
+
+        private void writeMetrics() {
+            try {
+                metrics.writeSnapshot(metricsFile);
+            } catch (IOException e) {
+                System.err.println("Error writing metrics: " + e.getMessage());
+            }
+        }
+
+        // Starts fetching a URL that holds one of the slots
+        private void dispatch(QueuedUrl next, Semaphore slots, AsyncFetcher fetcher) {
+            CrawlMetrics.Trace trace = metrics.start(next.url, next.depth);
+            if (fetcher != null) {
+                long started = System.nanoTime();
+                fetcher.fetch(next.url, () -> trace.end(CrawlMetrics.Stage.WAIT)).whenComplete((content, error) -> {
+                    // A fetch that failed before it was sent never ended its wait
+                    if (!trace.ended(CrawlMetrics.Stage.WAIT)) trace.end(CrawlMetrics.Stage.WAIT);
+                    trace.end(CrawlMetrics.Stage.FETCH);
+                    fetched(next, started, error);
+                    try {
+                        if (error != null) {
+                            trace.fail(error);
+                        } else {
+                            trace.bytes = content.length;
+                            processContent(content, trace);
+                        }
+                    } finally {
+                        finished(next, trace);
+                        slots.release();
+                    }
+                });
+            } else {
+                // Submit the crawling task to the thread pool
+                executorService.submit(new CrawlTask(next, trace, slots));
+            }
+        }
+
+        private QueuedUrl pollFrontier() throws IOException {
+            return state != null ? state.poll() : urlQueue.poll();
+        }
+
+        // Moves URLs from the frontier into the host queues in frontier order. A URL the host
+        // scheduler cannot take waits in unscheduled, and nothing behind it is read until it
+        // fits. It stays running in the crawl state, so a checkpoint saves it to be fetched
+        // again. Returns true if any URL was scheduled.
+        private boolean schedule() throws IOException {
+            boolean scheduled = false;
+            while (hostScheduler.queued() < SCHEDULED_HIGH) {
+                QueuedUrl next = unscheduled != null ? unscheduled : pollFrontier();
+                if (next == null) break;
+                if (!hostScheduler.add(next)) {
+                    unscheduled = next;
+                    break;
+                }
+                unscheduled = null;
+                scheduled = true;
+            }
+            return scheduled;
+        }
+
+        // Reports a completed fetch to the host scheduler; error is null if it succeeded
+        private void fetched(QueuedUrl queued, long started, Throwable error) {
+            if (hostScheduler != null) {
+                long now = System.nanoTime();
+                hostScheduler.finished(queued.url, now - started, error != null, isCongestion(error), now);
+            }
+        }
+
+        // Whether a failed fetch says the host is overloaded: a 5xx or 429 response, a timeout
+        // or a connection error. Other responses such as 404, and pages over the size limit,
+        // say nothing about the host's load.
+        private static boolean isCongestion(Throwable error) {
+            if (error instanceof CompletionException && error.getCause() != null) error = error.getCause();
+            if (error instanceof PageTooLargeException) return false;
+            if (error instanceof HttpStatusException) {
+                int status = ((HttpStatusException) error).status;
+                return status >= 500 || status == 429;
+            }
+            return error instanceof IOException;
+        }
+
+        private void checkpoint() {
+            try {
+                state.checkpoint(store, claimedPages.get(), crawledPages.get());
+            } catch (IOException e) {
+                System.err.println("Error writing checkpoint: " + e.getMessage());
+            }
+        }
+
+        // Claims a URL and queues it; returns false if it was already claimed or a limit is hit
+        private boolean enqueue(String url, int depth) {
+            if (depth > maxDepth || claimedPages.get() >= maxPages) return false;
+            if (state != null ? !state.claim(url) : !visitedUrls.add(url)) return false;
+            if (claimedPages.incrementAndGet() > maxPages) return false;
+
+            pending.incrementAndGet(); // Counted before it is visible in the queue
+            if (state != null) {
+                try {
+                    state.offer(new QueuedUrl(url, depth));
+                } catch (IOException e) {
+                    pending.decrementAndGet();
+                    metrics.error("queueing " + url, e);
+                    return false;
+                }
+            } else {
+                urlQueue.add(new QueuedUrl(url, depth));
+            }
+            metrics.queued.increment();
+            LockSupport.unpark(scheduler);
+            return true;
+        }
+
+        // Called once for every dequeued URL, whether or not its fetch succeeded. A page counts
+        // as crawled here, once it is fetched and saved, the same way the metrics count it.
+        private void finished(QueuedUrl queued, CrawlMetrics.Trace trace) {
+            if (trace.error == null) crawledPages.incrementAndGet();
+            metrics.finish(trace);
+            if (state != null) state.done(queued.url);
+            pending.decrementAndGet();
+            LockSupport.unpark(scheduler); // A slot is free, or the crawl is over
+        }
+
+        // Method to process the fetched content. The page stays in the bytes it was read into:
+        // links are found by one scan over them and the same bytes are saved.
+        private void processContent(byte[] content, CrawlMetrics.Trace trace) {
+            // Extract href/src links, resolved against the page URL
+            LinkExtractor.extract(content, trace.url, link -> {
+                trace.links++;
+                enqueue(link, trace.depth + 1);
+            });
+            trace.end(CrawlMetrics.Stage.PARSE);
+
+            // Save the content to a file or database (mock implementation)
+            saveContent(content, trace);
+            trace.end(CrawlMetrics.Stage.SAVE);
+        }
+
+        // Hands the page to the storage writer; waits here while storage is behind
+        private void saveContent(byte[] content, CrawlMetrics.Trace trace) {
+            try {
+                store.save(trace.url, content);
+            } catch (IOException e) {
+                trace.fail(e);
+            } catch (InterruptedException e) {
+                trace.fail(e); // Not stored
+                Thread.currentThread().interrupt();
+            }
         }
 
         // Task to crawl a single URL
         private class CrawlTask implements Runnable {
 
-            private final String url;
+            private final QueuedUrl queued;
+            private final CrawlMetrics.Trace trace;
+            private final Semaphore slots;
 
-            public CrawlTask(String url) {
-                this.url = url;
+            public CrawlTask(QueuedUrl queued, CrawlMetrics.Trace trace, Semaphore slots) {
+                this.queued = queued;
+                this.trace = trace;
+                this.slots = slots;
             }
 
             @Override
             public void run() {
+                trace.end(CrawlMetrics.Stage.WAIT);
+                long started = System.nanoTime();
+                boolean fetched = false;
+                Exception failure = null;
                 try {
-                    System.out.println("Crawling: " + url);
-
                     // Fetch the content of the web page
-                    String content = fetchContent(url);
+                    byte[] content = fetchContent(queued.url);
+                    fetched = true;
+                    fetched(queued, started, null);
 
                     // Process the fetched content (e.g., extract links or index data)
-                    processContent(content);
-
-                    // Mark the URL as visited
-                    synchronized (visitedUrls) {
-                        visitedUrls.add(url);
-                    }
+                    processContent(content, trace);
                 } catch (Exception e) {
-                    System.err.println("Error crawling " + url + ": " + e.getMessage());
+                    failure = e;
+                    trace.fail(e);
+                } finally {
+                    if (!fetched) fetched(queued, started, failure);
+                    finished(queued, trace);
+                    slots.release();
                 }
             }
 
-            // Method to fetch the content of a web page
-            private String fetchContent(String urlString) throws Exception {
-                StringBuilder content = new StringBuilder();
+            // Method to fetch the content of a web page. The body is read as raw bytes into one
+            // buffer, sized from Content-Length when the server sends it.
+            private byte[] fetchContent(String urlString) throws Exception {
                 HttpURLConnection connection = null;
 
                 try {
@@ -125,64 +578,2210 @@ public class Q6b {
                     connection.setRequestMethod("GET");
                     connection.setConnectTimeout(5000); // Timeout after 5 seconds
                     connection.setReadTimeout(5000);
+                    connection.connect(); // Name lookup and connect, or a kept-alive connection
+                    trace.end(CrawlMetrics.Stage.CONNECT);
 
                     if (connection.getResponseCode() != 200) {
-                        throw new RuntimeException("Failed to fetch content: HTTP " + connection.getResponseCode());
+                        throw new HttpStatusException(connection.getResponseCode());
                     }
 
-                    BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream()));
-                    String line;
-                    while ((line = reader.readLine()) != null) {
-                        content.append(line).append("\n");
+                    long length = connection.getContentLengthLong();
+                    if (length > maxPageBytes) throw new PageTooLargeException(maxPageBytes);
+                    byte[] content = new byte[length >= 0 ? (int) length : Math.min(16 * 1024, maxPageBytes)];
+                    int size = 0;
+                    try (InputStream in = connection.getInputStream()) {
+                        int read;
+                        while (true) {
+                            if (size == content.length) {
+                                if (size == length) break; // Exactly the announced length was read
+                                if (size == maxPageBytes) {
+                                    if (in.read() < 0) break; // Exactly at the limit
+                                    throw new PageTooLargeException(maxPageBytes);
+                                }
+                                content = Arrays.copyOf(content, (int) Math.min(size * 2L, maxPageBytes));
+                            }
+                            if ((read = in.read(content, size, content.length - size)) < 0) break;
+                            size += read;
+                        }
                     }
-                    reader.close();
+                    trace.end(CrawlMetrics.Stage.FETCH);
+                    trace.bytes = size;
+                    return size == content.length ? content : Arrays.copyOf(content, size);
                 } finally {
                     if (connection != null) {
                         connection.disconnect();
                     }
                 }
+            }
+        }
+    }
+
+    // A URL waiting in the frontier, with its link distance from the start URL
+    static final class QueuedUrl {
+        final String url;
+        final int depth;
+
+        QueuedUrl(String url, int depth) {
+            this.url = url;
+            this.depth = depth;
+        }
+    }
+
+    // A response other than 200 OK
+    static class HttpStatusException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        final int status;
+
+        HttpStatusException(int status) {
+            super("Failed to fetch content: HTTP " + status);
+            this.status = status;
+        }
+    }
+
+    // A page body over the crawler's size limit; the fetch is abandoned
+    static class PageTooLargeException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        PageTooLargeException(int maxBytes) {
+            super("Page larger than " + maxBytes + " bytes");
+        }
+    }
+
+    // Crawl state kept in a directory, so a crawl far larger than the heap can stop and resume.
+    //
+    // Frontier: new URLs collect in a tail of up to SEGMENT_ENTRIES entries, which is then written
+    // as one append-only segment file. URLs are read back from the oldest segment through a
+    // small buffer and only reach the in-memory tail once every segment is read, so the order
+    // stays FIFO (breadth-first) and the heap holds at most one tail of entries.
+    //
+    // Visited set: 64-bit URL fingerprints in a memory-mapped hash table on disk, behind a
+    // scalable Bloom filter that answers "never seen" (the common case for new links) without
+    // touching the table. The filter costs one to two bytes of heap per URL.
+    //
+    // Checkpoint: the tail is written out, pages still being fetched are saved to be fetched
+    // again, the page store is flushed and the fingerprints claimed since the last checkpoint are
+    // merged into the table; then the checkpoint file is replaced atomically. A crash loses at
+    // most the work since the last checkpoint, which the resumed crawl redoes.
+    static class CrawlState {
+        private static final int SEGMENT_ENTRIES = 1 << 16;
+        private static final int MAGIC = 0x43524157; // "CRAW"
+
+        private final Path directory;
+        private final ScalableBloomFilter bloom;
+        private final FingerprintTable visited;
+
+        // Frontier, oldest first: requeued pages, then segment files, then the tail
+        private final ArrayDeque<QueuedUrl> requeued = new ArrayDeque<>();
+        private final ArrayDeque<Long> segments = new ArrayDeque<>();
+        private final ArrayDeque<QueuedUrl> tail = new ArrayDeque<>();
+        private DataInputStream head;
+        private long headId = -1;
+        private int headRead;
+        private int headRemaining;
+        private long nextSegmentId;
+        private long size;
+
+        // Segments read to the end; deleted once a checkpoint no longer needs them
+        private final List<Long> consumedSegments = new ArrayList<>();
+
+        // Pages handed out by poll() and not yet done, by URL
+        private final HashMap<String, Integer> running = new HashMap<>();
+
+        // Position and counters restored from the checkpoint
+        private final long resumeHeadId;
+        private final int resumeHeadRead;
+        private final int claimedPages;
+        private final int crawledPages;
+
+        private CrawlState(Path directory) throws IOException {
+            this.directory = directory;
+            Files.createDirectories(directory);
+
+            long checkpointHead = -1;
+            int checkpointRead = 0, claimed = 0, crawled = 0;
+            Path checkpoint = directory.resolve("checkpoint");
+            if (Files.exists(checkpoint)) {
+                try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(checkpoint)))) {
+                    if (in.readInt() != MAGIC) throw new IOException("Not a crawl checkpoint: " + checkpoint);
+                    checkpointHead = in.readLong();
+                    checkpointRead = in.readInt();
+                    claimed = in.readInt();
+                    crawled = in.readInt();
+                }
+            }
+            this.resumeHeadId = checkpointHead;
+            this.resumeHeadRead = checkpointRead;
+            this.claimedPages = claimed;
+            this.crawledPages = crawled;
+
+            // The filter is rebuilt from the table rather than saved, so the two always agree
+            ScalableBloomFilter filter = new ScalableBloomFilter(1 << 20, 0.01);
+            this.visited = new FingerprintTable(directory.resolve("visited.tbl"), filter::add);
+            this.bloom = filter;
+
+            // Segments before the checkpoint's head were read in full; later ones, including any
+            // written by a checkpoint that did not finish, still hold queued URLs. A segment still
+            // under its temporary name was never queued.
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.tmp")) {
+                for (Path file : files) {
+                    Files.delete(file);
+                }
+            }
+            List<Long> ids = new ArrayList<>();
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "frontier-*.seg")) {
+                for (Path file : files) {
+                    String name = file.getFileName().toString();
+                    ids.add(Long.parseLong(name.substring("frontier-".length(), name.length() - ".seg".length())));
+                }
+            }
+            Collections.sort(ids);
+            for (long id : ids) {
+                if (id < checkpointHead) {
+                    Files.delete(segmentPath(id));
+                    continue;
+                }
+                segments.add(id);
+                try (DataInputStream in = new DataInputStream(Files.newInputStream(segmentPath(id)))) {
+                    size += in.readInt() - (id == checkpointHead ? checkpointRead : 0);
+                } catch (EOFException e) {
+                    // Empty segment
+                }
+                nextSegmentId = id + 1;
+            }
+
+            Path inFlight = directory.resolve("inflight.log");
+            if (Files.exists(inFlight)) {
+                try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(inFlight)))) {
+                    for (int count = in.readInt(); count > 0; count--) {
+                        int depth = in.readInt();
+                        requeued.add(new QueuedUrl(in.readUTF(), depth));
+                    }
+                }
+                size += requeued.size();
+            }
+        }
+
+        // Opens the state in a directory, resuming from its last checkpoint if there is one
+        static CrawlState open(Path directory) throws IOException {
+            return new CrawlState(directory);
+        }
+
+        int getClaimedPages() {
+            return claimedPages;
+        }
+
+        int getCrawledPages() {
+            return crawledPages;
+        }
+
+        // Queued URLs not yet handed out
+        synchronized long size() {
+            return size;
+        }
+
+        // Marks a URL visited; returns false if it already was
+        synchronized boolean claim(String url) {
+            long fingerprint = fingerprint(url);
+            if (bloom.mightContain(fingerprint) && visited.contains(fingerprint)) return false;
+            visited.add(fingerprint);
+            bloom.add(fingerprint);
+            return true;
+        }
 
-                return content.toString();
+        synchronized void offer(QueuedUrl queued) throws IOException {
+            tail.add(queued);
+            size++;
+            if (tail.size() >= SEGMENT_ENTRIES) writeTail();
+        }
+
+        // Next URL to fetch, or null if none is queued. It counts as running until done().
+        synchronized QueuedUrl poll() throws IOException {
+            QueuedUrl next = requeued.poll();
+            if (next == null) next = readHead();
+            if (next == null) next = tail.poll();
+            if (next != null) {
+                size--;
+                running.put(next.url, next.depth);
             }
+            return next;
+        }
 
-            // Method to process the fetched content
-            private void processContent(String content) {
-                // Example: Extract links from the content (simple regex-based extraction)
-                String[] words = content.split("\\s+");
-                for (String word : words) {
-                    if (word.startsWith("http")) {
-                        synchronized (urlQueue) {
-                            if (!visitedUrls.contains(word)) {
-                                urlQueue.add(word);
-                            }
+        synchronized void done(String url) {
+            running.remove(url);
+        }
+
+        private QueuedUrl readHead() throws IOException {
+            while (true) {
+                if (head != null) {
+                    if (headRemaining > 0) {
+                        try {
+                            int depth = head.readInt();
+                            QueuedUrl next = new QueuedUrl(head.readUTF(), depth);
+                            headRead++;
+                            headRemaining--;
+                            return next;
+                        } catch (EOFException e) {
+                            // Torn segment: the rest was never written, so it was never queued
+                            size -= headRemaining;
+                            headRemaining = 0;
                         }
                     }
+                    head.close();
+                    head = null;
+                    consumedSegments.add(headId);
                 }
+                Long id = segments.poll();
+                if (id == null) return null;
 
-                // Save the content to a file or database (mock implementation)
-                saveContent(content);
+                head = new DataInputStream(new BufferedInputStream(Files.newInputStream(segmentPath(id)), 64 * 1024));
+                headId = id;
+                headRead = 0;
+                try {
+                    headRemaining = head.readInt();
+                } catch (EOFException e) {
+                    headRemaining = 0;
+                }
+                if (id == resumeHeadId) {
+                    // Skip what was read before the checkpoint; size never counted those entries
+                    int skip = 0;
+                    try {
+                        for (; skip < resumeHeadRead && headRemaining > 0; skip++, headRead++, headRemaining--) {
+                            head.readInt();
+                            head.readUTF();
+                        }
+                    } catch (EOFException e) {
+                        size -= Math.max(0, headRemaining - (resumeHeadRead - skip));
+                        headRemaining = 0;
+                    }
+                }
             }
+        }
 
-            private void saveContent(String content) {
-                String filePath = "saved_content.txt"; // Define the file path
+        // Writes the tail as the next segment file
+        private void writeTail() throws IOException {
+            if (tail.isEmpty()) return;
+            long id = nextSegmentId++;
+            writeEntries(segmentPath(id), tail);
+            tail.clear();
+            segments.add(id);
+        }
 
-                try (FileWriter writer = new FileWriter(filePath, true)) { // Append mode
-                    writer.write(content + System.lineSeparator()); // Write content and add a newline
-                    System.out.println("Content saved successfully.");
-                } catch (IOException e) {
-                    System.err.println("Error saving content: " + e.getMessage());
+        // Writes a count and the entries to a temporary file, then renames it into place, so
+        // after a crash the file either holds every entry its count promises or does not exist
+        private static void writeEntries(Path path, Collection<QueuedUrl> entries) throws IOException {
+            Path temp = Path.of(path + ".tmp");
+            try (FileOutputStream file = new FileOutputStream(temp.toFile());
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 64 * 1024))) {
+                out.writeInt(entries.size());
+                for (QueuedUrl entry : entries) {
+                    out.writeInt(entry.depth);
+                    out.writeUTF(entry.url);
+                }
+                out.flush();
+                file.getFD().sync();
+            }
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        // Makes the current state durable. pages is flushed after the running pages are recorded,
+        // so every page finished before this point has its content stored.
+        synchronized void checkpoint(Flushable pages, int claimedPages, int crawledPages) throws IOException {
+            writeTail();
+
+            List<QueuedUrl> again = new ArrayList<>(requeued);
+            for (Map.Entry<String, Integer> page : running.entrySet()) {
+                again.add(new QueuedUrl(page.getKey(), page.getValue()));
+            }
+            writeEntries(directory.resolve("inflight.log"), again);
+
+            pages.flush();
+            visited.commit();
+
+            Path temp = directory.resolve("checkpoint.tmp");
+            try (FileOutputStream file = new FileOutputStream(temp.toFile());
+                 DataOutputStream out = new DataOutputStream(file)) {
+                out.writeInt(MAGIC);
+                if (head != null) {
+                    out.writeLong(headId);
+                    out.writeInt(headRead);
+                } else {
+                    out.writeLong(segments.isEmpty() ? nextSegmentId : segments.peek());
+                    out.writeInt(0);
                 }
+                out.writeInt(claimedPages);
+                out.writeInt(crawledPages);
+                out.flush();
+                file.getFD().sync();
+            }
+            Files.move(temp, directory.resolve("checkpoint"), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            for (long id : consumedSegments) {
+                Files.deleteIfExists(segmentPath(id));
+            }
+            consumedSegments.clear();
+        }
+
+        synchronized void close() throws IOException {
+            if (head != null) head.close();
+            visited.close();
+        }
+
+        // Heap used by the visited set's Bloom filter, per visited URL
+        synchronized double bloomBytesPerUrl() {
+            return visited.size() == 0 ? 0 : (double) bloom.memoryBytes() / visited.size();
+        }
+
+        private Path segmentPath(long id) {
+            return directory.resolve(String.format("frontier-%012d.seg", id));
+        }
+
+        // 64-bit FNV-1a over the URL's chars, then the MurmurHash3 finalizer. Two of 50M URLs
+        // share a fingerprint with probability about 7e-5.
+        static long fingerprint(String url) {
+            long hash = 0xcbf29ce484222325L;
+            for (int i = 0; i < url.length(); i++) {
+                hash = (hash ^ url.charAt(i)) * 0x100000001b3L;
             }
+            return mix(hash);
+        }
+
+        static long mix(long hash) {
+            hash = (hash ^ (hash >>> 33)) * 0xff51afd7ed558ccdL;
+            hash = (hash ^ (hash >>> 33)) * 0xc4ceb9fe1a85ec53L;
+            return hash ^ (hash >>> 33);
         }
     }
 
-    // Main method to test the web crawler
-    public static void main(String[] args) {
+    // Bloom filter that grows by adding stages: each holds twice the URLs of the one before at
+    // half its false positive rate, so the overall rate stays under the target however many
+    // URLs are added.
+    static class ScalableBloomFilter {
+        private static final class Stage {
+            final long[] bits;
+            final long mask;
+            final int hashes;
+            final long capacity;
+            long count;
+
+            Stage(long capacity, double falsePositiveRate) {
+                double bitsNeeded = -capacity * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2));
+                long size = Long.highestOneBit(Math.max(64, (long) Math.ceil(bitsNeeded)) - 1) << 1;
+                this.bits = new long[(int) (size >>> 6)];
+                this.mask = size - 1;
+                this.hashes = (int) Math.ceil(-Math.log(falsePositiveRate) / Math.log(2));
+                this.capacity = capacity;
+            }
+
+            boolean contains(long hash, long step) {
+                for (int i = 0; i < hashes; i++, hash += step) {
+                    long bit = hash & mask;
+                    if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) return false;
+                }
+                return true;
+            }
+
+            void add(long hash, long step) {
+                for (int i = 0; i < hashes; i++, hash += step) {
+                    long bit = hash & mask;
+                    bits[(int) (bit >>> 6)] |= 1L << bit;
+                }
+                count++;
+            }
+        }
+
+        private final List<Stage> stages = new ArrayList<>();
+        private double nextRate;
+
+        ScalableBloomFilter(long initialCapacity, double falsePositiveRate) {
+            nextRate = falsePositiveRate / 2; // The rates 1/2 + 1/4 + ... of the target sum to it
+            stages.add(new Stage(initialCapacity, nextRate));
+        }
+
+        // Fingerprints are already well mixed; the probe step comes from mixing once more
+        boolean mightContain(long fingerprint) {
+            long step = CrawlState.mix(fingerprint ^ 0x9e3779b97f4a7c15L) | 1;
+            for (int i = stages.size() - 1; i >= 0; i--) {
+                if (stages.get(i).contains(fingerprint, step)) return true;
+            }
+            return false;
+        }
+
+        void add(long fingerprint) {
+            Stage last = stages.get(stages.size() - 1);
+            if (last.count >= last.capacity) {
+                nextRate /= 2;
+                last = new Stage(last.capacity * 2, nextRate);
+                stages.add(last);
+            }
+            last.add(fingerprint, CrawlState.mix(fingerprint ^ 0x9e3779b97f4a7c15L) | 1);
+        }
+
+        long memoryBytes() {
+            long bytes = 0;
+            for (Stage stage : stages) {
+                bytes += stage.bits.length * 8L;
+            }
+            return bytes;
+        }
+    }
+
+    // Open-addressing hash set of non-zero 64-bit fingerprints in a memory-mapped file, mapped in
+    // chunks so it can pass 2 GB. Added fingerprints wait in a small heap set until commit()
+    // merges them into the file, so the file only changes at checkpoints.
+    static class FingerprintTable {
+        private static final int CHUNK_BITS = 24; // Slots per mapping: 16M, 128 MB
+        private static final long INITIAL_SLOTS = 1 << 20;
+
+        private final Path path;
+        private FileChannel channel;
+        private MappedByteBuffer[] maps;
+        private LongBuffer[] chunks;
+        private long slots;
+        private long count;
+
+        private long[] added = new long[1024];
+        private int addedCount;
+
+        // Opens or creates the table; every stored fingerprint is passed to existing
+        FingerprintTable(Path path, LongConsumer existing) throws IOException {
+            this.path = path;
+            boolean created = !Files.exists(path) || Files.size(path) == 0;
+            open(path, created ? INITIAL_SLOTS : Files.size(path) / 8);
+            if (!created) {
+                for (long slot = 0; slot < slots; slot++) {
+                    long fingerprint = get(slot);
+                    if (fingerprint != 0) {
+                        count++;
+                        existing.accept(fingerprint);
+                    }
+                }
+            }
+        }
+
+        private void open(Path file, long size) throws IOException {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            if (channel.size() < size * 8) channel.write(ByteBuffer.allocate(1), size * 8 - 1); // Sparse
+            slots = size;
+            int chunkCount = (int) ((size + (1L << CHUNK_BITS) - 1) >>> CHUNK_BITS);
+            maps = new MappedByteBuffer[chunkCount];
+            chunks = new LongBuffer[chunkCount];
+            for (int i = 0; i < chunkCount; i++) {
+                long first = (long) i << CHUNK_BITS;
+                maps[i] = channel.map(FileChannel.MapMode.READ_WRITE, first * 8, Math.min(1L << CHUNK_BITS, size - first) * 8);
+                chunks[i] = maps[i].asLongBuffer();
+            }
+        }
+
+        private long get(long slot) {
+            return chunks[(int) (slot >>> CHUNK_BITS)].get((int) (slot & ((1L << CHUNK_BITS) - 1)));
+        }
+
+        private void set(long slot, long fingerprint) {
+            chunks[(int) (slot >>> CHUNK_BITS)].put((int) (slot & ((1L << CHUNK_BITS) - 1)), fingerprint);
+        }
+
+        long size() {
+            return count + addedCount;
+        }
+
+        boolean contains(long fingerprint) {
+            fingerprint = fingerprint == 0 ? 1 : fingerprint;
+            if (addedContains(fingerprint)) return true;
+            for (long slot = fingerprint & (slots - 1); ; slot = (slot + 1) & (slots - 1)) {
+                long stored = get(slot);
+                if (stored == fingerprint) return true;
+                if (stored == 0) return false;
+            }
+        }
+
+        void add(long fingerprint) {
+            fingerprint = fingerprint == 0 ? 1 : fingerprint;
+            if (addedCount * 2 >= added.length) {
+                long[] old = added;
+                added = new long[old.length * 2];
+                addedCount = 0;
+                for (long value : old) {
+                    if (value != 0) addedInsert(value);
+                }
+            }
+            addedInsert(fingerprint);
+        }
+
+        private boolean addedContains(long fingerprint) {
+            int mask = added.length - 1;
+            for (int slot = (int) fingerprint & mask; ; slot = (slot + 1) & mask) {
+                if (added[slot] == fingerprint) return true;
+                if (added[slot] == 0) return false;
+            }
+        }
+
+        private void addedInsert(long fingerprint) {
+            int mask = added.length - 1;
+            for (int slot = (int) fingerprint & mask; ; slot = (slot + 1) & mask) {
+                if (added[slot] == fingerprint) return;
+                if (added[slot] == 0) {
+                    added[slot] = fingerprint;
+                    addedCount++;
+                    return;
+                }
+            }
+        }
+
+        private boolean insert(long fingerprint) {
+            for (long slot = fingerprint & (slots - 1); ; slot = (slot + 1) & (slots - 1)) {
+                long stored = get(slot);
+                if (stored == fingerprint) return false;
+                if (stored == 0) {
+                    set(slot, fingerprint);
+                    return true;
+                }
+            }
+        }
+
+        // Merges the added fingerprints into the file, growing it past half full, and forces it
+        void commit() throws IOException {
+            if ((count + addedCount) * 2 > slots) grow(Long.highestOneBit((count + addedCount) * 4 - 1));
+            for (long fingerprint : added) {
+                if (fingerprint != 0 && insert(fingerprint)) count++;
+            }
+            for (MappedByteBuffer map : maps) {
+                map.force();
+            }
+            added = new long[1024];
+            addedCount = 0;
+        }
+
+        // Rehashes into a larger file and swaps it in with an atomic rename
+        private void grow(long size) throws IOException {
+            LongBuffer[] oldChunks = chunks;
+            FileChannel oldChannel = channel;
+
+            Path grown = Path.of(path + ".grow");
+            Files.deleteIfExists(grown);
+            open(grown, size);
+            for (int i = 0; i < oldChunks.length; i++) {
+                LongBuffer chunk = oldChunks[i];
+                for (int j = 0; j < chunk.limit(); j++) {
+                    long fingerprint = chunk.get(j);
+                    if (fingerprint != 0) insert(fingerprint);
+                }
+            }
+            for (MappedByteBuffer map : maps) {
+                map.force();
+            }
+            oldChannel.close();
+            Files.move(grown, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    // Streaming href/src extractor. Bytes are fed in chunks of any size and pass through a small
+    // HTML tag state machine once; only attribute values of href and src are copied out. Each
+    // value is resolved against the page URL and normalized, so the same page reached through
+    // different spellings of its URL is deduplicated by the visited set.
+    static class LinkExtractor {
+        private static final int TEXT = 0, TAG_OPEN = 1, TAG_NAME = 2, BEFORE_ATTR = 3, ATTR_NAME = 4,
+                AFTER_ATTR = 5, BEFORE_VALUE = 6, QUOTED_VALUE = 7, UNQUOTED_VALUE = 8, COMMENT = 9,
+                DECLARATION = 10;
+
+        // Longer attribute values are not URLs worth following
+        private static final int MAX_VALUE = 2048;
+
+        private final URI base;
+        private final Consumer<String> links;
+
+        private int state = TEXT;
+        private String wanted;   // "href" or "src" while the attribute name is a prefix of it
+        private int nameLength;  // Attribute name bytes matched so far
+        private boolean capture; // Current value belongs to href or src
+        private byte quote;
+        private int dashes;      // Consecutive '-' seen, to find the end of a comment
+        private byte[] value = new byte[256];
+        private int valueLength;
+
+        LinkExtractor(String baseUrl, Consumer<String> links) {
+            URI uri = URI.create(baseUrl);
+            this.base = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? uri.resolve("/") : uri;
+            this.links = links;
+        }
+
+        // Extracts the links of a whole page held in memory
+        static void extract(byte[] page, String baseUrl, Consumer<String> links) {
+            new LinkExtractor(baseUrl, links).feed(page, 0, page.length);
+        }
+
+        // Extracts the links of a page read from a stream, without buffering the page
+        static void extract(InputStream in, String baseUrl, Consumer<String> links) throws IOException {
+            LinkExtractor extractor = new LinkExtractor(baseUrl, links);
+            byte[] chunk = new byte[16 * 1024];
+            int read;
+            while ((read = in.read(chunk)) >= 0) {
+                extractor.feed(chunk, 0, read);
+            }
+        }
+
+        void feed(ByteBuffer buffer) {
+            while (buffer.hasRemaining()) {
+                feedByte(buffer.get());
+            }
+        }
+
+        void feed(byte[] bytes, int offset, int length) {
+            for (int i = offset, end = offset + length; i < end; i++) {
+                feedByte(bytes[i]);
+            }
+        }
+
+        private void feedByte(byte b) {
+            switch (state) {
+                case TEXT:
+                    if (b == '<') state = TAG_OPEN;
+                    break;
+                case TAG_OPEN:
+                    if (b == '!') {
+                        state = DECLARATION;
+                        dashes = 0;
+                    } else if (b == '/' || isLetter(b)) {
+                        state = TAG_NAME;
+                    } else if (b != '<') {
+                        state = TEXT; // A bare '<' in text
+                    }
+                    break;
+                case DECLARATION:
+                    // "<!--" starts a comment; any other "<!...>" is skipped up to its '>'
+                    if (b == '-' && ++dashes == 2) {
+                        state = COMMENT;
+                        dashes = 0;
+                    } else if (b == '>') {
+                        state = TEXT;
+                    } else if (b != '-') {
+                        dashes = 2; // Not a comment; stop counting
+                    }
+                    break;
+                case COMMENT:
+                    if (b == '-') {
+                        dashes++;
+                    } else {
+                        if (b == '>' && dashes >= 2) state = TEXT;
+                        dashes = 0;
+                    }
+                    break;
+                case TAG_NAME:
+                    if (b == '>') state = TEXT;
+                    else if (isSpace(b)) state = BEFORE_ATTR;
+                    break;
+                case BEFORE_ATTR:
+                    if (b == '>') state = TEXT;
+                    else if (!isSpace(b) && b != '/') startName(b);
+                    break;
+                case ATTR_NAME:
+                    if (b == '=') startValue();
+                    else if (b == '>') state = TEXT;
+                    else if (isSpace(b)) state = AFTER_ATTR;
+                    else if (b != '/') appendName(b);
+                    break;
+                case AFTER_ATTR:
+                    if (b == '=') startValue();
+                    else if (b == '>') state = TEXT;
+                    else if (!isSpace(b) && b != '/') startName(b); // Attribute without a value
+                    break;
+                case BEFORE_VALUE:
+                    if (b == '"' || b == '\'') {
+                        quote = b;
+                        state = QUOTED_VALUE;
+                    } else if (b == '>') {
+                        state = TEXT;
+                    } else if (!isSpace(b)) {
+                        state = UNQUOTED_VALUE;
+                        appendValue(b);
+                    }
+                    break;
+                case QUOTED_VALUE:
+                    if (b == quote) {
+                        endValue();
+                        state = BEFORE_ATTR;
+                    } else {
+                        appendValue(b);
+                    }
+                    break;
+                case UNQUOTED_VALUE:
+                    if (b == '>') {
+                        endValue();
+                        state = TEXT;
+                    } else if (isSpace(b)) {
+                        endValue();
+                        state = BEFORE_ATTR;
+                    } else {
+                        appendValue(b);
+                    }
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown state " + state);
+            }
+        }
+
+        private void startName(byte b) {
+            state = ATTR_NAME;
+            nameLength = 0;
+            int lower = b | 0x20;
+            wanted = lower == 'h' ? "href" : lower == 's' ? "src" : null;
+            appendName(b);
+        }
+
+        // Matches the attribute name against the wanted one byte by byte, ignoring case
+        private void appendName(byte b) {
+            if (wanted == null) return;
+            if (nameLength < wanted.length() && (b | 0x20) == wanted.charAt(nameLength)) {
+                nameLength++;
+            } else {
+                wanted = null;
+            }
+        }
+
+        private void startValue() {
+            state = BEFORE_VALUE;
+            capture = wanted != null && nameLength == wanted.length();
+            valueLength = 0;
+        }
+
+        private void appendValue(byte b) {
+            if (!capture) return;
+            if (valueLength == MAX_VALUE) {
+                capture = false; // Too long to be a link
+                return;
+            }
+            if (valueLength == value.length) value = Arrays.copyOf(value, value.length * 2);
+            value[valueLength++] = b;
+        }
+
+        private void endValue() {
+            if (capture) {
+                String link = normalize(base, new String(value, 0, valueLength, StandardCharsets.UTF_8));
+                if (link != null) links.accept(link);
+            }
+            capture = false;
+        }
+
+        // Resolves a link against the page URL and brings it to one canonical spelling: http(s)
+        // only, lower-case scheme and host, no default port, no fragment, dot segments removed and
+        // an empty path written as "/". Returns null for links that cannot be crawled.
+        static String normalize(URI base, String link) {
+            link = link.trim();
+            if (link.isEmpty() || link.charAt(0) == '#') return null;
+            if (link.indexOf('&') >= 0) link = link.replace("&amp;", "&");
+            if (link.indexOf(' ') >= 0) link = link.replace(" ", "%20");
+
+            URI uri;
+            try {
+                uri = base.resolve(new URI(link)).normalize();
+            } catch (URISyntaxException | IllegalArgumentException e) {
+                return null;
+            }
+            String scheme = uri.getScheme();
+            String host = uri.getHost();
+            if (scheme == null || host == null) return null;
+            scheme = scheme.toLowerCase(Locale.ROOT);
+            int port = uri.getPort();
+            if (scheme.equals("http")) {
+                if (port == 80) port = -1;
+            } else if (scheme.equals("https")) {
+                if (port == 443) port = -1;
+            } else {
+                return null; // mailto:, javascript:, ftp: and so on
+            }
+
+            StringBuilder normalized = new StringBuilder(link.length() + 32)
+                    .append(scheme).append("://").append(host.toLowerCase(Locale.ROOT));
+            if (port != -1) normalized.append(':').append(port);
+            String path = uri.getRawPath();
+            normalized.append(path == null || path.isEmpty() ? "/" : path);
+            if (uri.getRawQuery() != null) normalized.append('?').append(uri.getRawQuery());
+            return normalized.toString();
+        }
+
+        private static boolean isSpace(byte b) {
+            return b == ' ' || b == '\n' || b == '\t' || b == '\r' || b == '\f';
+        }
+
+        private static boolean isLetter(byte b) {
+            return (b | 0x20) >= 'a' && (b | 0x20) <= 'z';
+        }
+    }
+
+    // Append-only page store with a single writer thread. Pages are handed over through a bounded
+    // queue, so fetchers block when storage falls behind. The writer drains whatever is queued,
+    // packs it into a direct buffer as length-prefixed records and commits the batch with one
+    // write (and one force when sync is on). An index file maps each URL to its record offset,
+    // so any stored page can be read back by URL.
+    //
+    // Record: int recordLength, int urlLength, url (UTF-8), byte flags, int rawLength, body.
+    // The body is Deflater-compressed when FLAG_DEFLATED is set.
+    static class PageStore implements AutoCloseable, Flushable {
+        private static final byte FLAG_DEFLATED = 1;
+        private static final int HEADER = 4 + 1 + 4; // Fields after recordLength, without the URL bytes
+        private static final int BUFFER_SIZE = 4 << 20;
+        private static final int MAX_BATCH = 1024;
+
+        // A page waiting for the writer, or a flush() waiting for the pages queued before it
+        private static final class Page {
+            final byte[] url;
+            final byte[] content;
+            final CountDownLatch flushed;
+
+            Page(byte[] url, byte[] content, CountDownLatch flushed) {
+                this.url = url;
+                this.content = content;
+                this.flushed = flushed;
+            }
+        }
+
+        // Queued by close() to stop the writer
+        private static final Page CLOSE = new Page(new byte[0], new byte[0], null);
+
+        private final FileChannel data;
+        private final FileChannel indexFile;
+        private final ConcurrentHashMap<String, Long> index = new ConcurrentHashMap<>();
+        private final BlockingQueue<Page> queue;
+        private final boolean compress;
+        private final boolean sync;
+        private final Thread writer;
+        private volatile IOException failure;
+        private volatile boolean closed;
+
+        // Held shared while a page or flush barrier is queued and exclusively by close() to set
+        // closed, so nothing can be queued behind CLOSE and silently dropped
+        private final ReentrantReadWriteLock closing = new ReentrantReadWriteLock();
+
+        // Writer thread state
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private final ByteBuffer indexBuffer = ByteBuffer.allocate(64 * 1024);
+        private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        private byte[] deflated = new byte[64 * 1024];
+        private long position;
+
+        // Opens the store at dataPath (index at dataPath + ".idx"), appending to existing records
+        PageStore(Path dataPath, int queueCapacity, boolean compress, boolean sync) throws IOException {
+            this.data = FileChannel.open(dataPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.indexFile = FileChannel.open(Path.of(dataPath + ".idx"),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.queue = new ArrayBlockingQueue<>(queueCapacity);
+            this.compress = compress;
+            this.sync = sync;
+            this.position = data.size();
+            data.position(position);
+            loadIndex();
+
+            writer = new Thread(this::writeLoop, "page-store-writer");
+            writer.setDaemon(true);
+            writer.start();
+        }
+
+        // Index entries: int urlLength, url (UTF-8), long offset. A torn entry at the end, or one
+        // pointing past the data a crash left behind, is dropped.
+        private void loadIndex() throws IOException {
+            ByteBuffer in = ByteBuffer.allocate((int) Math.min(indexFile.size(), Integer.MAX_VALUE));
+            while (in.hasRemaining() && indexFile.read(in, in.position()) > 0) {
+                // Read the whole index
+            }
+            in.flip();
+            long valid = 0;
+            while (in.remaining() >= 4) {
+                int urlLength = in.getInt();
+                if (urlLength < 0 || in.remaining() < urlLength + 8) break;
+                byte[] url = new byte[urlLength];
+                in.get(url);
+                long offset = in.getLong();
+                if (offset >= position) break;
+                index.put(new String(url, StandardCharsets.UTF_8), offset);
+                valid = in.position();
+            }
+            indexFile.truncate(valid);
+            indexFile.position(valid);
+        }
+
+        // Queues a page for writing; blocks while the queue is full
+        void save(String url, byte[] content) throws IOException, InterruptedException {
+            Page page = new Page(url.getBytes(StandardCharsets.UTF_8), content, null);
+            closing.readLock().lock();
+            try {
+                if (closed) throw new IOException("Page store is closed");
+                do {
+                    if (failure != null) throw failure; // The writer has stopped and will not drain the queue
+                } while (!queue.offer(page, 100, TimeUnit.MILLISECONDS));
+            } finally {
+                closing.readLock().unlock();
+            }
+        }
+
+        // Waits until every page saved before this call is written and forced to disk
+        @Override
+        public void flush() throws IOException {
+            Page barrier = new Page(null, null, new CountDownLatch(1));
+            try {
+                closing.readLock().lock();
+                try {
+                    if (closed) return; // close() writes everything
+                    do {
+                        if (failure != null) throw failure;
+                    } while (!queue.offer(barrier, 100, TimeUnit.MILLISECONDS));
+                } finally {
+                    closing.readLock().unlock();
+                }
+                while (!barrier.flushed.await(100, TimeUnit.MILLISECONDS)) {
+                    if (failure != null) throw failure;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while flushing pages");
+            }
+        }
+
+        // Reads a stored page back, or returns null if the URL was never stored
+        byte[] read(String url) throws IOException {
+            Long offset = index.get(url);
+            if (offset == null) return null;
+
+            ByteBuffer length = ByteBuffer.allocate(4);
+            readFully(length, offset);
+            ByteBuffer record = ByteBuffer.allocate(length.getInt(0));
+            readFully(record, offset + 4);
+            record.flip();
+            record.position(4 + record.getInt(0)); // Skip the URL
+            byte flags = record.get();
+            byte[] content = new byte[record.getInt()];
+            if ((flags & FLAG_DEFLATED) == 0) {
+                record.get(content);
+                return content;
+            }
+            Inflater inflater = new Inflater();
+            try {
+                inflater.setInput(record);
+                int size = 0;
+                while (size < content.length) {
+                    int n = inflater.inflate(content, size, content.length - size);
+                    if (n == 0 && (inflater.finished() || inflater.needsInput())) break;
+                    size += n;
+                }
+                if (size != content.length) throw new IOException("Corrupt record for " + url);
+                return content;
+            } catch (DataFormatException e) {
+                throw new IOException("Corrupt record for " + url, e);
+            } finally {
+                inflater.end();
+            }
+        }
+
+        private void readFully(ByteBuffer target, long offset) throws IOException {
+            while (target.hasRemaining()) {
+                if (data.read(target, offset + target.position()) < 0) throw new IOException("Truncated record");
+            }
+        }
+
+        boolean contains(String url) {
+            return index.containsKey(url);
+        }
+
+        int size() {
+            return index.size();
+        }
+
+        // Pages waiting for the writer
+        int queued() {
+            return queue.size();
+        }
+
+        private void writeLoop() {
+            List<Page> batch = new ArrayList<>(MAX_BATCH);
+            List<String> urls = new ArrayList<>(MAX_BATCH);
+            List<Long> offsets = new ArrayList<>(MAX_BATCH);
+            List<CountDownLatch> flushes = new ArrayList<>();
+            boolean running = true;
+            try {
+                while (running) {
+                    batch.add(queue.take());
+                    queue.drainTo(batch, MAX_BATCH - 1);
+
+                    for (Page page : batch) {
+                        if (page == CLOSE) {
+                            running = false;
+                        } else if (page.flushed != null) {
+                            flushes.add(page.flushed);
+                        } else {
+                            offsets.add(append(page));
+                            urls.add(new String(page.url, StandardCharsets.UTF_8));
+                        }
+                    }
+                    commit(urls, offsets, sync || !flushes.isEmpty());
+                    for (CountDownLatch flushed : flushes) {
+                        flushed.countDown();
+                    }
+                    batch.clear();
+                    urls.clear();
+                    offsets.clear();
+                    flushes.clear();
+                }
+            } catch (IOException e) {
+                failure = e; // Reported by the next save() and by close()
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        // Adds one record to the buffer and returns its offset in the data file
+        private long append(Page page) throws IOException {
+            byte[] body = page.content;
+            int bodyLength = body.length;
+            byte flags = 0;
+            if (compress && body.length > 0) {
+                deflater.reset();
+                deflater.setInput(body);
+                deflater.finish();
+                if (deflated.length < body.length) deflated = new byte[body.length];
+                int size = 0;
+                while (!deflater.finished() && size < body.length) {
+                    size += deflater.deflate(deflated, size, body.length - size);
+                }
+                if (deflater.finished() && size < body.length) { // Kept raw when it does not shrink
+                    body = deflated;
+                    bodyLength = size;
+                    flags = FLAG_DEFLATED;
+                }
+            }
+
+            int recordLength = HEADER + page.url.length + bodyLength;
+            if (buffer.remaining() < 4 + recordLength) flushBuffer();
+
+            long offset = position;
+            if (buffer.remaining() >= 4 + recordLength) {
+                putHeader(buffer, recordLength, page.url, flags, page.content.length);
+                buffer.put(body, 0, bodyLength);
+            } else {
+                // Larger than the whole buffer: write the header and body directly
+                ByteBuffer header = ByteBuffer.allocate(4 + HEADER + page.url.length);
+                putHeader(header, recordLength, page.url, flags, page.content.length);
+                header.flip();
+                ByteBuffer[] parts = {header, ByteBuffer.wrap(body, 0, bodyLength)};
+                while (parts[1].hasRemaining()) {
+                    data.write(parts, 0, 2);
+                }
+            }
+            position += 4 + recordLength;
+            return offset;
+        }
+
+        private static void putHeader(ByteBuffer target, int recordLength, byte[] url, byte flags, int rawLength) {
+            target.putInt(recordLength).putInt(url.length).put(url).put(flags).putInt(rawLength);
+        }
+
+        private void flushBuffer() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                data.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        // Group commit: the batch's records reach the file first, then their index entries, and
+        // only then are the pages visible to read()
+        private void commit(List<String> urls, List<Long> offsets, boolean force) throws IOException {
+            flushBuffer();
+            if (force) data.force(false);
+
+            for (int i = 0; i < urls.size(); i++) {
+                byte[] url = urls.get(i).getBytes(StandardCharsets.UTF_8);
+                if (indexBuffer.remaining() < 4 + url.length + 8) writeIndexBuffer();
+                if (indexBuffer.remaining() < 4 + url.length + 8) continue; // URL too long to index
+                indexBuffer.putInt(url.length).put(url).putLong(offsets.get(i));
+            }
+            writeIndexBuffer();
+            if (force) indexFile.force(false);
+
+            for (int i = 0; i < urls.size(); i++) {
+                index.put(urls.get(i), offsets.get(i));
+            }
+        }
+
+        private void writeIndexBuffer() throws IOException {
+            indexBuffer.flip();
+            while (indexBuffer.hasRemaining()) {
+                indexFile.write(indexBuffer);
+            }
+            indexBuffer.clear();
+        }
+
+        // Writes everything still queued and closes the files
+        @Override
+        public void close() throws IOException {
+            closing.writeLock().lock();
+            try {
+                if (closed) return;
+                closed = true;
+            } finally {
+                closing.writeLock().unlock();
+            }
+            try {
+                while (failure == null && !queue.offer(CLOSE, 100, TimeUnit.MILLISECONDS)) {
+                    // Wait for room behind the pages still queued
+                }
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                deflater.end();
+                if (failure == null) {
+                    data.force(false);
+                    indexFile.force(false);
+                }
+                data.close();
+                indexFile.close();
+            }
+            if (failure != null) throw failure;
+        }
+    }
+
+    // Latency histogram with HDR-style log-linear buckets: each power of two is split into 16
+    // linear sub-buckets, so every value from 1 ns to hours is reported within 1/16 (6%) of its
+    // true value in a fixed 8 KB of counts. Recording is one lock-free increment of a bucket.
+    static class LatencyHistogram {
+        private static final int SUB_BITS = 4, SUB_BUCKETS = 1 << SUB_BITS;
+
+        private final AtomicLongArray counts = new AtomicLongArray((64 - SUB_BITS + 1) * SUB_BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder total = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        void record(long nanos) {
+            if (nanos < 0) nanos = 0;
+            counts.getAndIncrement(index(nanos));
+            count.increment();
+            total.add(nanos);
+            max.accumulate(nanos);
+        }
+
+        // Values below 16 get a bucket each; above, the top four bits after the leading one
+        // select the sub-bucket within the value's power of two
+        static int index(long value) {
+            if (value < SUB_BUCKETS) return (int) value;
+            int exponent = 63 - Long.numberOfLeadingZeros(value);
+            return (exponent - SUB_BITS) * SUB_BUCKETS + (int) (value >>> (exponent - SUB_BITS));
+        }
+
+        // Largest value that falls in a bucket
+        static long highestValue(int index) {
+            if (index < SUB_BUCKETS) return index;
+            int shift = index / SUB_BUCKETS - 1;
+            long sub = index % SUB_BUCKETS + SUB_BUCKETS;
+            return ((sub + 1) << shift) - 1;
+        }
+
+        long count() {
+            return count.sum();
+        }
+
+        double meanNanos() {
+            long n = count.sum();
+            return n == 0 ? 0 : (double) total.sum() / n;
+        }
+
+        long maxNanos() {
+            return max.get();
+        }
+
+        // Value at or below which the given fraction of recorded values fall, within bucket
+        // precision. Counts recorded while this runs may or may not be included.
+        long percentileNanos(double fraction) {
+            long n = 0;
+            long[] copy = new long[counts.length()];
+            for (int i = 0; i < copy.length; i++) {
+                copy[i] = counts.get(i);
+                n += copy[i];
+            }
+            if (n == 0) return 0;
+            long rank = Math.max(1, (long) Math.ceil(fraction * n));
+            long seen = 0;
+            for (int i = 0; i < copy.length; i++) {
+                seen += copy[i];
+                if (seen >= rank) return Math.min(highestValue(i), max.get());
+            }
+            return max.get();
+        }
+    }
+
+    // Counters, latency histograms and gauges of a crawl. Each page carries a Trace that times
+    // its stages on the thread doing the work, without locks; finish() adds the trace to the
+    // histograms and keeps the breakdown of slow and failed pages for the report. Gauges are
+    // only read when a report is made, so they cost nothing while crawling.
+    static class CrawlMetrics {
+        enum Stage {
+            WAIT("queued"),           // Dispatched until the fetch starts: pool or host queue
+            CONNECT("dns/connect"),   // Name lookup and TCP connect, or taking a pooled connection
+            FETCH("fetch"),           // Request until the whole body is read
+            PARSE("parse"),           // Link extraction, including claiming and queueing the links
+            SAVE("save"),             // Handing the page to the store, including waiting for space
+            PAGE("page");             // Dispatched until finished
+
+            final String label;
+
+            Stage(String label) {
+                this.label = label;
+            }
+        }
+
+        private static final Stage[] STAGES = Stage.values();
+        private static final int MAX_TRACES = 32;
+
+        // Timings of one page. Used by one thread at a time: the thread that hands the page on
+        // publishes it to the next one.
+        static final class Trace {
+            final String url;
+            final int depth;
+            final long dispatched;
+            private final long[] nanos = new long[STAGES.length];
+            private int recorded; // Bit per stage that was timed
+            private long mark;
+            long bytes;
+            int links;
+            String error;
+
+            Trace(String url, int depth) {
+                this.url = url;
+                this.depth = depth;
+                this.dispatched = this.mark = System.nanoTime();
+            }
+
+            // Ends a stage that began where the previous one ended
+            void end(Stage stage) {
+                long now = System.nanoTime();
+                nanos[stage.ordinal()] += now - mark;
+                recorded |= 1 << stage.ordinal();
+                mark = now;
+            }
+
+            boolean ended(Stage stage) {
+                return (recorded & 1 << stage.ordinal()) != 0;
+            }
+
+            void fail(Throwable e) {
+                if (error == null) error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+            }
+
+            // "1234.5 ms  url  queued 0.1  fetch 1230.2 ...  12345 bytes  4 links"
+            String describe(long totalNanos) {
+                StringBuilder line = new StringBuilder(String.format(Locale.ROOT, "%9.1f ms  %s (depth %d) ", totalNanos / 1e6, url, depth));
+                for (Stage stage : STAGES) {
+                    if ((recorded & 1 << stage.ordinal()) != 0) {
+                        line.append(String.format(Locale.ROOT, " %s %.1f", stage.label, nanos[stage.ordinal()] / 1e6));
+                    }
+                }
+                line.append("  ").append(bytes).append(" bytes  ").append(links).append(" links");
+                if (error != null) line.append("  failed: ").append(error);
+                return line.toString();
+            }
+        }
+
+        final LongAdder pages = new LongAdder();     // Fetched and processed
+        final LongAdder failures = new LongAdder();  // Fetch or save failed
+        final LongAdder bytes = new LongAdder();     // Page bytes fetched
+        final LongAdder links = new LongAdder();     // Links found on pages
+        final LongAdder queued = new LongAdder();    // New URLs claimed and queued
+        final LongAdder slowPages = new LongAdder(); // Pages over the slow threshold
+
+        private final LatencyHistogram[] latencies = new LatencyHistogram[STAGES.length];
+        private final Map<String, LongSupplier> gauges = Collections.synchronizedMap(new LinkedHashMap<>());
+        private final ArrayDeque<String> slowTraces = new ArrayDeque<>();
+        private final ArrayDeque<String> errorTraces = new ArrayDeque<>();
+        private final long started = System.nanoTime();
+        private volatile long slowNanos;
+
+        CrawlMetrics(long slowNanos) {
+            this.slowNanos = slowNanos;
+            for (int i = 0; i < latencies.length; i++) {
+                latencies[i] = new LatencyHistogram();
+            }
+        }
+
+        void setSlowThreshold(long slowNanos) {
+            this.slowNanos = slowNanos;
+        }
+
+        // A value read when a report is made, such as a queue length
+        void gauge(String name, LongSupplier value) {
+            gauges.put(name, value);
+        }
+
+        Trace start(String url, int depth) {
+            return new Trace(url, depth);
+        }
+
+        LatencyHistogram latency(Stage stage) {
+            return latencies[stage.ordinal()];
+        }
+
+        // Records a page whose work is over, whether or not it succeeded
+        void finish(Trace trace) {
+            long total = System.nanoTime() - trace.dispatched;
+            for (Stage stage : STAGES) {
+                if (trace.ended(stage)) latencies[stage.ordinal()].record(trace.nanos[stage.ordinal()]);
+            }
+            latencies[Stage.PAGE.ordinal()].record(total);
+            links.add(trace.links);
+            if (trace.error != null) {
+                failures.increment();
+                keep(errorTraces, trace.describe(total));
+            } else {
+                pages.increment();
+                bytes.add(trace.bytes);
+            }
+            if (total >= slowNanos) {
+                slowPages.increment();
+                if (trace.error == null) keep(slowTraces, trace.describe(total));
+            }
+        }
+
+        // Records a failure that belongs to no page, such as a URL that could not be queued
+        void error(String what, Throwable e) {
+            keep(errorTraces, what + ": " + (e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName()));
+        }
+
+        // Keeps the last MAX_TRACES lines
+        private static void keep(ArrayDeque<String> traces, String line) {
+            synchronized (traces) {
+                if (traces.size() == MAX_TRACES) traces.poll();
+                traces.add(line);
+            }
+        }
+
+        // Latency percentiles per stage, in milliseconds
+        List<String> latencyReport() {
+            List<String> lines = new ArrayList<>();
+            lines.add(String.format(Locale.ROOT, "%-12s %9s %9s %9s %9s %9s %9s %9s",
+                    "latency ms", "count", "mean", "p50", "p90", "p99", "p99.9", "max"));
+            for (Stage stage : STAGES) {
+                LatencyHistogram histogram = latencies[stage.ordinal()];
+                if (histogram.count() == 0) continue;
+                lines.add(String.format(Locale.ROOT, "%-12s %9d %9.2f %9.2f %9.2f %9.2f %9.2f %9.2f",
+                        stage.label, histogram.count(), histogram.meanNanos() / 1e6,
+                        histogram.percentileNanos(0.5) / 1e6, histogram.percentileNanos(0.9) / 1e6,
+                        histogram.percentileNanos(0.99) / 1e6, histogram.percentileNanos(0.999) / 1e6,
+                        histogram.maxNanos() / 1e6));
+            }
+            return lines;
+        }
+
+        // Counters with their rate over the crawl so far, gauges, latencies and the last slow
+        // and failed pages
+        List<String> report() {
+            double seconds = Math.max(1e-9, (System.nanoTime() - started) / 1e9);
+            List<String> lines = new ArrayList<>();
+            lines.add(String.format(Locale.ROOT, "crawl metrics at %s, %.1f s into the crawl", Instant.now(), seconds));
+            String[] names = {"pages", "failures", "bytes", "links found", "urls queued", "slow pages"};
+            LongAdder[] counters = {pages, failures, bytes, links, queued, slowPages};
+            for (int i = 0; i < names.length; i++) {
+                long value = counters[i].sum();
+                lines.add(String.format(Locale.ROOT, "%-12s %12d %12.1f/s", names[i], value, value / seconds));
+            }
+            synchronized (gauges) {
+                for (Map.Entry<String, LongSupplier> gauge : gauges.entrySet()) {
+                    lines.add(String.format(Locale.ROOT, "%-12s %12d", gauge.getKey(), gauge.getValue().getAsLong()));
+                }
+            }
+            lines.addAll(latencyReport());
+            synchronized (slowTraces) {
+                if (!slowTraces.isEmpty()) lines.add("slowest recent pages (over " + slowNanos / 1_000_000 + " ms):");
+                for (String trace : slowTraces) {
+                    lines.add("  " + trace);
+                }
+            }
+            synchronized (errorTraces) {
+                if (!errorTraces.isEmpty()) lines.add("recent failures:");
+                for (String trace : errorTraces) {
+                    lines.add("  " + trace);
+                }
+            }
+            return lines;
+        }
+
+        // Replaces the snapshot file with a new report, so readers never see half of one
+        void writeSnapshot(Path file) throws IOException {
+            Path temp = Path.of(file + ".tmp");
+            Files.write(temp, report(), StandardCharsets.UTF_8);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    // Per-host scheduler for politeness. Queued URLs wait in one queue per host, and hosts with
+    // work take turns in a ring, so a host with a deep queue cannot starve the others. A host may
+    // start a fetch when it is below its concurrency limit and its fair share of the global
+    // slots, and at least hostDelay after its previous start.
+    //
+    // Each host's limit adapts like TCP Vegas with AIMD on errors. The baseline is the lowest
+    // latency seen, and limit * (1 - baseline / smoothed latency) estimates the requests queued
+    // at the host. Below 1 the limit grows by one per window of requests, above 3 it shrinks
+    // the same way, and a sign of congestion (5xx, 429, a timeout or a connection error) halves
+    // it and backs the host off exponentially. Other errors count like successful fetches.
+    //
+    // A host with no queued or running fetches for HOST_IDLE_NANOS is forgotten, so a crawl
+    // across many hosts keeps state only for recent ones; its totals go to the report.
+    static class HostScheduler {
+        private static final double QUEUE_LOW = 1, QUEUE_HIGH = 3;
+        private static final long MIN_BACKOFF_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+        private static final long MAX_BACKOFF_NANOS = TimeUnit.SECONDS.toNanos(10);
+        private static final long HOST_IDLE_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+        static final class Host {
+            final String name;
+            final ArrayDeque<QueuedUrl> queue = new ArrayDeque<>();
+            boolean inRing;
+            boolean busy; // Has queued or running fetches
+            int active;
+            double limit = 2;
+            long nextStart;
+            long lastFinished;
+            long backoff;
+            long baseLatency = Long.MAX_VALUE;
+            double smoothedLatency;
+            long fetched, errors, latencyTotal;
+
+            Host(String name) {
+                this.name = name;
+            }
+        }
+
+        private final HashMap<String, Host> hosts = new HashMap<>();
+        private final ArrayDeque<Host> ring = new ArrayDeque<>();
+        private final int slots;
+        private final int maxPerHost;
+        private final int maxQueuePerHost;
+        private final int maxHeldBack;
+        private final long hostDelayNanos;
+        private int queued; // Queued URLs within maxQueuePerHost of their host
+        private int heldBack; // Queued URLs beyond it
+        private int busyHosts;
+        private long nextReady; // Earliest start time of a host held back by its delay
+        private long nextEviction;
+        private long evictedHosts, evictedFetched, evictedErrors;
+
+        HostScheduler(int slots, int maxPerHost, int maxQueuePerHost, int maxHeldBack, long hostDelayNanos) {
+            this.slots = slots;
+            this.maxPerHost = maxPerHost;
+            this.maxQueuePerHost = maxQueuePerHost;
+            this.maxHeldBack = maxHeldBack;
+            this.hostDelayNanos = hostDelayNanos;
+            this.nextEviction = System.nanoTime() + HOST_IDLE_NANOS;
+        }
+
+        // "host:port" part of a URL, the unit politeness applies to
+        static String hostOf(String url) {
+            int start = url.indexOf("://");
+            start = start < 0 ? 0 : start + 3;
+            int end = url.indexOf('/', start);
+            return end < 0 ? url.substring(start) : url.substring(start, end);
+        }
+
+        // Queues a URL under its host. Past maxQueuePerHost the URL is held back, and counts
+        // against maxHeldBack instead of queued(); returns false if that is used up.
+        synchronized boolean add(QueuedUrl url) {
+            Host host = hosts.computeIfAbsent(hostOf(url.url), Host::new);
+            if (host.queue.size() < maxQueuePerHost) {
+                queued++;
+            } else if (heldBack < maxHeldBack) {
+                heldBack++;
+            } else {
+                return false;
+            }
+            host.queue.add(url);
+            if (!host.inRing) {
+                host.inRing = true;
+                ring.add(host);
+            }
+            updateBusy(host);
+            return true;
+        }
+
+        private void updateBusy(Host host) {
+            boolean busy = host.active > 0 || !host.queue.isEmpty();
+            if (busy != host.busy) {
+                host.busy = busy;
+                busyHosts += busy ? 1 : -1;
+            }
+        }
+
+        synchronized int queued() {
+            return queued;
+        }
+
+        // All queued URLs, held back or not
+        synchronized int size() {
+            return queued + heldBack;
+        }
+
+        // Next URL whose host may start a fetch now, taking hosts in turn; null if none may.
+        // A host's fair share is the slots divided evenly among hosts with queued or running work.
+        synchronized QueuedUrl next(long now) {
+            if (now - nextEviction >= 0) evictIdle(now);
+            int fairShare = Math.max(1, (slots + busyHosts - 1) / Math.max(1, busyHosts));
+            nextReady = Long.MAX_VALUE;
+            for (int turns = ring.size(); turns > 0; turns--) {
+                Host host = ring.poll();
+                boolean ready = host.active < Math.min((int) host.limit, fairShare);
+                if (ready && now - host.nextStart < 0) {
+                    nextReady = Math.min(nextReady, host.nextStart);
+                    ready = false;
+                }
+                if (!ready) {
+                    ring.add(host);
+                    continue;
+                }
+
+                // The first held-back URL of the host, if any, moves within the limit
+                if (host.queue.size() > maxQueuePerHost) {
+                    heldBack--;
+                } else {
+                    queued--;
+                }
+                QueuedUrl next = host.queue.poll();
+                host.active++;
+                host.nextStart = now + hostDelayNanos;
+                if (host.queue.isEmpty()) {
+                    host.inRing = false;
+                } else {
+                    ring.add(host);
+                }
+                return next;
+            }
+            return null;
+        }
+
+        // Forgets hosts idle for HOST_IDLE_NANOS whose delay and backoff have passed
+        private void evictIdle(long now) {
+            for (Iterator<Host> it = hosts.values().iterator(); it.hasNext(); ) {
+                Host host = it.next();
+                if (!host.busy && now - host.lastFinished >= HOST_IDLE_NANOS && now - host.nextStart >= 0) {
+                    it.remove();
+                    evictedHosts++;
+                    evictedFetched += host.fetched;
+                    evictedErrors += host.errors;
+                }
+            }
+            nextEviction = now + HOST_IDLE_NANOS / 2;
+        }
+
+        // When a host held back only by its delay may start again, or Long.MAX_VALUE
+        synchronized long nextReady() {
+            return nextReady;
+        }
+
+        // Reports a finished fetch and adapts the host's limit; congested says the failure was
+        // a sign of an overloaded host
+        synchronized void finished(String url, long latencyNanos, boolean failed, boolean congested, long now) {
+            Host host = hosts.get(hostOf(url));
+            host.active--;
+            host.fetched++;
+            host.latencyTotal += latencyNanos;
+            host.lastFinished = now;
+            updateBusy(host);
+
+            if (failed) host.errors++;
+            if (congested) {
+                host.limit = Math.max(1, host.limit / 2);
+                host.backoff = host.backoff == 0 ? MIN_BACKOFF_NANOS : Math.min(host.backoff * 2, MAX_BACKOFF_NANOS);
+                host.nextStart = Math.max(host.nextStart, now + host.backoff);
+                return;
+            }
+            host.backoff /= 2;
+            if (host.backoff < MIN_BACKOFF_NANOS) host.backoff = 0;
+
+            host.baseLatency = Math.min(host.baseLatency, latencyNanos);
+            host.smoothedLatency = host.smoothedLatency == 0 ? latencyNanos : host.smoothedLatency * 0.875 + latencyNanos * 0.125;
+            double queuedAtHost = host.limit * (1 - host.baseLatency / host.smoothedLatency);
+            if (queuedAtHost < QUEUE_LOW) {
+                host.limit = Math.min(maxPerHost, host.limit + 1 / host.limit);
+            } else if (queuedAtHost > QUEUE_HIGH) {
+                host.limit = Math.max(1, host.limit - 1 / host.limit);
+            }
+        }
+
+        // One line per host: fetches, errors, mean latency and the concurrency limit reached
+        synchronized List<String> report() {
+            List<String> lines = new ArrayList<>();
+            for (Host host : hosts.values()) {
+                lines.add(String.format("%-22s %7d fetched  %5d errors  %7.1f ms mean  limit %.1f",
+                        host.name, host.fetched, host.errors,
+                        host.fetched == 0 ? 0 : host.latencyTotal / 1e6 / host.fetched, host.limit));
+            }
+            Collections.sort(lines);
+            if (evictedHosts > 0) {
+                lines.add(String.format("%d idle hosts forgotten: %d fetched  %d errors", evictedHosts, evictedFetched, evictedErrors));
+            }
+            return lines;
+        }
+
+        // Fetches per host still tracked, for fairness measurements
+        synchronized Map<String, Long> fetchedByHost() {
+            Map<String, Long> fetched = new HashMap<>();
+            for (Host host : hosts.values()) {
+                fetched.put(host.name, host.fetched);
+            }
+            return fetched;
+        }
+    }
+
+    // Non-blocking page fetcher on java.net.http.HttpClient. One shared client keeps connections
+    // alive and reuses them per host. Each host gets at most maxPerHost requests at a time; the
+    // rest wait in that host's queue without holding a thread.
+    static class AsyncFetcher {
+        private final HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5)) // Timeout after 5 seconds
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+        private final int maxPerHost;
+        private final int maxPageBytes;
+        private final ConcurrentHashMap<String, HostQueue> hosts = new ConcurrentHashMap<>();
+
+        AsyncFetcher(int maxPerHost, int maxPageBytes) {
+            this.maxPerHost = maxPerHost;
+            this.maxPageBytes = maxPageBytes;
+        }
+
+        // Fetches a page body; completes exceptionally for invalid URLs, non-200 responses and
+        // bodies over maxPageBytes
+        CompletableFuture<byte[]> fetch(String urlString) {
+            return fetch(urlString, () -> { });
+        }
+
+        // As fetch(url), running onSend when the request leaves its host queue
+        CompletableFuture<byte[]> fetch(String urlString, Runnable onSend) {
+            URI uri;
+            try {
+                uri = URI.create(urlString);
+                if (uri.getHost() == null) throw new IllegalArgumentException("No host in " + urlString);
+            } catch (IllegalArgumentException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+            HostQueue host = hosts.computeIfAbsent(uri.getHost() + ":" + uri.getPort(), key -> new HostQueue());
+            CompletableFuture<byte[]> result = new CompletableFuture<>();
+            host.submit(() -> {
+                onSend.run();
+                send(uri, result, host);
+            });
+            return result;
+        }
+
+        private void send(URI uri, CompletableFuture<byte[]> result, HostQueue host) {
+            HttpRequest request = HttpRequest.newBuilder(uri).timeout(Duration.ofSeconds(5)).GET().build();
+            // The body of a non-200 response is never kept
+            HttpResponse.BodyHandler<byte[]> body = info -> info.statusCode() == 200
+                    ? new LimitedBody(maxPageBytes, info.headers().firstValueAsLong("Content-Length").orElse(-1))
+                    : HttpResponse.BodySubscribers.replacing(null);
+            client.sendAsync(request, body).whenComplete((response, error) -> {
+                host.finished();
+                if (error != null) {
+                    // The client may wrap the body's own failure
+                    Throwable cause = error;
+                    while (!(cause instanceof PageTooLargeException) && cause.getCause() != null) cause = cause.getCause();
+                    result.completeExceptionally(cause instanceof PageTooLargeException ? cause : error);
+                } else if (response.statusCode() != 200) {
+                    result.completeExceptionally(new HttpStatusException(response.statusCode()));
+                } else {
+                    result.complete(response.body());
+                }
+            });
+        }
+
+        // Collects a body into one array and cancels the response once it passes maxBytes
+        private static class LimitedBody implements HttpResponse.BodySubscriber<byte[]> {
+            private final int maxBytes;
+            private final CompletableFuture<byte[]> body = new CompletableFuture<>();
+            private Flow.Subscription subscription;
+            private byte[] content;
+            private int size;
+
+            LimitedBody(int maxBytes, long announcedLength) {
+                this.maxBytes = maxBytes;
+                this.content = new byte[announcedLength >= 0 && announcedLength <= maxBytes ? (int) announcedLength : Math.min(16 * 1024, maxBytes)];
+                if (announcedLength > maxBytes) body.completeExceptionally(new PageTooLargeException(maxBytes));
+            }
+
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                this.subscription = subscription;
+                if (body.isDone()) {
+                    subscription.cancel();
+                } else {
+                    subscription.request(Long.MAX_VALUE);
+                }
+            }
+
+            @Override
+            public void onNext(List<ByteBuffer> buffers) {
+                if (body.isDone()) return;
+                for (ByteBuffer buffer : buffers) {
+                    int length = buffer.remaining();
+                    if (length > maxBytes - size) {
+                        subscription.cancel();
+                        content = null;
+                        body.completeExceptionally(new PageTooLargeException(maxBytes));
+                        return;
+                    }
+                    if (size + length > content.length) {
+                        content = Arrays.copyOf(content, (int) Math.min(Math.max(content.length * 2L, size + length), maxBytes));
+                    }
+                    buffer.get(content, size, length);
+                    size += length;
+                }
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                body.completeExceptionally(error);
+            }
+
+            @Override
+            public void onComplete() {
+                if (body.isDone()) return;
+                body.complete(size == content.length ? content : Arrays.copyOf(content, size));
+            }
+
+            @Override
+            public CompletionStage<byte[]> getBody() {
+                return body;
+            }
+        }
+
+        // Requests of one host: runs at most maxPerHost at a time and queues the rest
+        private class HostQueue {
+            private final ArrayDeque<Runnable> waiting = new ArrayDeque<>();
+            private int active = 0;
+
+            void submit(Runnable request) {
+                synchronized (this) {
+                    if (active >= maxPerHost) {
+                        waiting.add(request);
+                        return;
+                    }
+                    active++;
+                }
+                request.run();
+            }
+
+            void finished() {
+                Runnable next;
+                synchronized (this) {
+                    next = waiting.poll();
+                    if (next == null) {
+                        active--;
+                        return;
+                    }
+                }
+                next.run(); // The finished request's slot goes straight to the next one
+            }
+        }
+    }
+
+    // Local in-process server with a synthetic link graph of the given number of pages, for
+    // running the crawler without the network. Page i links to the next linksPerPage pages.
+    static HttpServer startStubServer(int pages, int linksPerPage) throws IOException {
+        return startStubHosts(pages, linksPerPage, new int[] {0}, new double[] {0})[0].server;
+    }
+
+    // One simulated host of a stub site, with counters of the requests it served
+    static final class StubHost {
+        final HttpServer server;
+        final AtomicLong served = new AtomicLong();
+        final AtomicLong failed = new AtomicLong();
+        final AtomicLong busyNanos = new AtomicLong();
+
+        StubHost(HttpServer server) {
+            this.server = server;
+        }
+
+        String url(int page) {
+            return "http://127.0.0.1:" + server.getAddress().getPort() + "/page/" + page;
+        }
+
+        void stop() {
+            server.stop(0);
+            ((ExecutorService) server.getExecutor()).shutdown();
+        }
+    }
+
+    // Starts one server per host, each a distinct host:port to the crawler. Host h answers after
+    // delayMillis[h] and fails a fixed failureRates[h] share of its pages with HTTP 500. Page i of
+    // a host links to the host's next linksPerPage pages and to page i of the next host.
+    static StubHost[] startStubHosts(int pagesPerHost, int linksPerPage, int[] delayMillis, double[] failureRates)
+            throws IOException {
+        // Without TCP_NODELAY every response waits out the client's delayed ACK (~40 ms)
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        StubHost[] hosts = new StubHost[delayMillis.length];
+        for (int h = 0; h < hosts.length; h++) {
+            hosts[h] = new StubHost(HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0));
+        }
+
+        for (int h = 0; h < hosts.length; h++) {
+            StubHost host = hosts[h];
+            StubHost nextHost = hosts[(h + 1) % hosts.length];
+            int delay = delayMillis[h];
+            long failureThreshold = (long) (failureRates[h] * 1000);
+            host.server.createContext("/page/", exchange -> {
+                long start = System.nanoTime();
+                String path = exchange.getRequestURI().getPath();
+                int page;
+                try {
+                    page = Integer.parseInt(path.substring("/page/".length()));
+                } catch (NumberFormatException e) {
+                    page = -1;
+                }
+                try {
+                    if (delay > 0) Thread.sleep(delay);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                host.served.incrementAndGet();
+                if (page < 0 || page >= pagesPerHost) {
+                    exchange.sendResponseHeaders(404, -1);
+                    exchange.close();
+                    return;
+                }
+                if (Math.floorMod(page * 0x9e3779b9, 1000) < failureThreshold) {
+                    host.failed.incrementAndGet();
+                    exchange.sendResponseHeaders(500, -1);
+                    exchange.close();
+                    host.busyNanos.addAndGet(System.nanoTime() - start);
+                    return;
+                }
+
+                StringBuilder html = new StringBuilder("<html><body><h1>Page ").append(page).append("</h1>\n");
+                for (int link = 1; link <= linksPerPage; link++) {
+                    String target = host.url((page + link) % pagesPerHost);
+                    html.append("<a href=\"").append(target).append("\">").append(target).append("</a>\n");
+                }
+                if (nextHost != host) {
+                    html.append("<a href=\"").append(nextHost.url(page)).append("\">next host</a>\n");
+                }
+                html.append("</body></html>\n");
+                byte[] body = html.toString().getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "text/html; charset=utf-8");
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+                host.busyNanos.addAndGet(System.nanoTime() - start);
+            });
+            host.server.setExecutor(Executors.newFixedThreadPool(delay > 0 ? 16 : 4));
+            host.server.start();
+        }
+        return hosts;
+    }
+
+    // Crawls four stub hosts (two fast, one answering in 300 ms, one failing 40% of pages) for
+    // a fixed time, without and with per-host scheduling, and prints pages/s overall and per
+    // host, and each host's share of the time the servers spent answering.
+    static void benchmarkHosts(int seconds) throws Exception {
+        int[] delays = {0, 0, 300, 0};
+        double[] failures = {0, 0, 0, 0.4};
+        String[] names = {"fast", "fast", "slow", "failing"};
+        PrintStream console = System.out;
+
+        for (boolean scheduling : new boolean[] {false, true}) {
+            StubHost[] hosts = startStubHosts(1_000_000, 3, delays, failures);
+            Path contentFile = Files.createTempFile("crawl", ".dat");
+            MultithreadedWebCrawler crawler = new MultithreadedWebCrawler(hosts[0].url(0));
+            crawler.setContentFile(contentFile.toString());
+            crawler.setHostScheduling(scheduling);
+
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+            System.setErr(new PrintStream(OutputStream.nullOutputStream()));
+            Thread crawl = new Thread(crawler::startCrawling);
+            try {
+                crawl.start();
+                Thread.sleep(seconds * 1000L);
+                crawler.stop();
+                crawl.join();
+            } finally {
+                System.setOut(console);
+                System.setErr(console);
+            }
+
+            System.out.printf("host scheduling %s: %.0f pages/s%n", scheduling ? "on" : "off",
+                    (double) crawler.getCrawledPages() / seconds);
+            long busyTotal = 0;
+            for (StubHost host : hosts) {
+                busyTotal += host.busyNanos.get();
+            }
+            for (int h = 0; h < hosts.length; h++) {
+                System.out.printf("  %-8s %7.1f pages/s  %5d failed  %5.1f%% of server time%n",
+                        names[h], (double) (hosts[h].served.get() - hosts[h].failed.get()) / seconds,
+                        hosts[h].failed.get(), 100.0 * hosts[h].busyNanos.get() / Math.max(1, busyTotal));
+                hosts[h].stop();
+            }
+            for (String line : crawler.getHostReport()) {
+                System.out.println("  " + line);
+            }
+            Files.delete(contentFile);
+            Files.delete(Path.of(contentFile + ".idx"));
+        }
+    }
+
+    // Crawls a synthetic site of the given size in both fetch modes and prints pages/s.
+    // Console output is discarded while crawling so it does not dominate the measurement.
+    static void benchmark(int pages) throws IOException {
+        HttpServer server = startStubServer(pages, 3);
+        String startUrl = "http://127.0.0.1:" + server.getAddress().getPort() + "/page/0";
+        PrintStream console = System.out;
+        try {
+            for (MultithreadedWebCrawler.FetchMode mode : MultithreadedWebCrawler.FetchMode.values()) {
+                Path contentFile = Files.createTempFile("crawl", ".dat");
+                MultithreadedWebCrawler crawler = new MultithreadedWebCrawler(startUrl, mode);
+                crawler.setContentFile(contentFile.toString());
+
+                System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+                long start = System.nanoTime();
+                try {
+                    crawler.startCrawling();
+                } finally {
+                    System.setOut(console);
+                }
+                double seconds = (System.nanoTime() - start) / 1e9;
+                Files.delete(contentFile);
+                Files.delete(Path.of(contentFile + ".idx"));
+
+                System.out.printf("%-8s %7d pages in %6.2f s  %8.0f pages/s%n",
+                        mode, crawler.getCrawledPages(), seconds, crawler.getCrawledPages() / seconds);
+                for (String line : crawler.getMetrics().latencyReport()) {
+                    System.out.println("  " + line);
+                }
+            }
+        } finally {
+            server.stop(0);
+            ((ExecutorService) server.getExecutor()).shutdown();
+        }
+
+        // Instrumentation cost per page: one trace with every stage timed, and its recording
+        CrawlMetrics metrics = new CrawlMetrics(Long.MAX_VALUE);
+        long nanos = 0;
+        int tracedPages = 1_000_000;
+        for (int round = 0; round < 3; round++) { // The first rounds warm up the JIT
+            long start = System.nanoTime();
+            for (int i = 0; i < tracedPages; i++) {
+                CrawlMetrics.Trace trace = metrics.start(startUrl, 1);
+                for (CrawlMetrics.Stage stage : CrawlMetrics.Stage.values()) {
+                    if (stage != CrawlMetrics.Stage.PAGE) trace.end(stage);
+                }
+                trace.links = 3;
+                metrics.queued.increment();
+                metrics.finish(trace);
+            }
+            nanos = System.nanoTime() - start;
+        }
+        double perPage = (double) nanos / tracedPages;
+        System.out.printf("metrics  %8.0f ns/page, %.2f%% of the time per page at 5000 pages/s%n",
+                perPage, perPage / 200_000 * 100);
+    }
+
+    // Compares the old page handling (decode line by line, split on whitespace, keep tokens that
+    // start with "http") with LinkExtractor over the raw bytes of a saved page: bytes/s, bytes
+    // allocated per page and links found.
+    static void benchmarkExtraction(Path pageFile) throws IOException {
+        byte[] page = Files.readAllBytes(pageFile);
+        String baseUrl = "https://quotes.toscrape.com/";
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) java.lang.management.ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        int rounds = 20_000;
+
+        for (int pass = 0; pass < 2; pass++) { // The first pass warms up the JIT
+            for (int method = 0; method < 2; method++) {
+                int[] links = new int[1];
+                long allocated = threads.getThreadAllocatedBytes(threadId);
+                long start = System.nanoTime();
+                for (int round = 0; round < rounds; round++) {
+                    links[0] = 0;
+                    if (method == 0) {
+                        StringBuilder content = new StringBuilder();
+                        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(page)))) {
+                            String line;
+                            while ((line = reader.readLine()) != null) {
+                                content.append(line).append("\n");
+                            }
+                        }
+                        for (String word : content.toString().split("\\s+")) {
+                            if (word.startsWith("http")) links[0]++;
+                        }
+                    } else {
+                        LinkExtractor.extract(page, baseUrl, link -> links[0]++);
+                    }
+                }
+                long nanos = System.nanoTime() - start;
+                allocated = threads.getThreadAllocatedBytes(threadId) - allocated;
+                if (pass == 1) {
+                    System.out.printf("%-10s %8.1f MB/s  %8d bytes allocated/page  %3d links%n",
+                            method == 0 ? "split" : "extractor", (double) page.length * rounds / nanos * 1e3,
+                            allocated / rounds, links[0]);
+                }
+            }
+        }
+    }
+
+    // Stores a saved page many times from several threads, first the old way (open the file in
+    // append mode per page) and then through PageStore, raw and deflated, and prints pages/s.
+    static void benchmarkStore(Path pageFile) throws Exception {
+        byte[] page = Files.readAllBytes(pageFile);
+        int threads = 4, pagesPerThread = 5_000;
+
+        for (int method = 0; method < 3; method++) {
+            Path target = Files.createTempFile("store", ".dat");
+            PageStore store = method == 0 ? null : new PageStore(target, 256, method == 2, false);
+            Thread[] writers = new Thread[threads];
+            long start = System.nanoTime();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                writers[t] = new Thread(() -> {
+                    try {
+                        for (int i = 0; i < pagesPerThread; i++) {
+                            if (store == null) {
+                                try (FileOutputStream out = new FileOutputStream(target.toFile(), true)) {
+                                    out.write(page);
+                                }
+                            } else {
+                                store.save("https://quotes.toscrape.com/" + thread + "/" + i, page);
+                            }
+                        }
+                    } catch (IOException | InterruptedException e) {
+                        throw new RuntimeException(e);
+                    }
+                });
+                writers[t].start();
+            }
+            for (Thread writer : writers) {
+                writer.join();
+            }
+            if (store != null) store.close();
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            System.out.printf("%-14s %8.0f pages/s  %6.1f MB on disk%n",
+                    method == 0 ? "append/page" : method == 1 ? "store" : "store+deflate",
+                    threads * pagesPerThread / seconds, Files.size(target) / 1e6);
+            Files.delete(target);
+            Files.deleteIfExists(Path.of(target + ".idx"));
+        }
+    }
+
+    // Claims the given number of distinct URLs in an in-memory visited set and in a CrawlState,
+    // and prints the heap each keeps per URL and claims/s. After a checkpoint the CrawlState's
+    // heap is its Bloom filter. Claiming every URL a second time checks that it answers
+    // "visited" for all of them.
+    static void benchmarkState(int urls) throws IOException {
+        String prefix = "https://quotes.toscrape.com/page/";
+
+        long before = usedHeap();
+        long start = System.nanoTime();
+        Set<String> visited = ConcurrentHashMap.newKeySet();
+        for (int i = 0; i < urls; i++) {
+            visited.add(prefix + i);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("in-memory  %8.1f heap bytes/url  %10.0f claims/s%n",
+                (double) (usedHeap() - before) / visited.size(), urls / seconds);
+        visited = null;
+
+        Path directory = Files.createTempDirectory("crawl-state");
+        start = System.nanoTime();
+        CrawlState state = CrawlState.open(directory);
+        for (int i = 0; i < urls; i++) {
+            state.claim(prefix + i);
+            if (i % 1_000_000 == 999_999) state.checkpoint(() -> { }, i + 1, 0);
+        }
+        state.checkpoint(() -> { }, urls, 0);
+        seconds = (System.nanoTime() - start) / 1e9;
+        int repeated = 0;
+        for (int i = 0; i < urls; i++) {
+            if (state.claim(prefix + i)) repeated++;
+        }
+        System.out.printf("CrawlState %8.1f heap bytes/url  %10.0f claims/s  (%.1f MB table on disk, %d claimed twice)%n",
+                state.bloomBytesPerUrl(), urls / seconds, Files.size(directory.resolve("visited.tbl")) / 1e6, repeated);
+        state.close();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    // Main method to test the web crawler
+    public static void main(String[] args) throws Exception {
+        // Run with "local" to crawl a synthetic site on an in-process server with the async fetcher
+        if (args.length > 0 && args[0].equals("local")) {
+            HttpServer server = startStubServer(200, 3);
+            Path contentFile = Files.createTempFile("crawl", ".dat");
+            try {
+                MultithreadedWebCrawler crawler = new MultithreadedWebCrawler(
+                        "http://127.0.0.1:" + server.getAddress().getPort() + "/page/0", MultithreadedWebCrawler.FetchMode.ASYNC);
+                crawler.setContentFile(contentFile.toString());
+                crawler.startCrawling();
+            } finally {
+                server.stop(0);
+                ((ExecutorService) server.getExecutor()).shutdown();
+                Files.delete(contentFile);
+                Files.delete(Path.of(contentFile + ".idx"));
+            }
+            return;
+        }
+
+        // Run with "benchmark [pages]" to measure crawl throughput on a local site (100k pages by default)
+        if (args.length > 0 && args[0].equals("benchmark")) {
+            benchmark(args.length > 1 ? Integer.parseInt(args[1]) : 100_000);
+            return;
+        }
+
+        // Run with "extract [file]" to measure link extraction on a saved page
+        if (args.length > 0 && args[0].equals("extract")) {
+            benchmarkExtraction(Path.of(args.length > 1 ? args[1] : "saved_content.txt"));
+            return;
+        }
+
+        // Run with "store [file]" to measure page storage with a saved page
+        if (args.length > 0 && args[0].equals("store")) {
+            benchmarkStore(Path.of(args.length > 1 ? args[1] : "saved_content.txt"));
+            return;
+        }
+
+        // Run with "state [urls]" to measure visited-set memory per URL (2M URLs by default)
+        if (args.length > 0 && args[0].equals("state")) {
+            benchmarkState(args.length > 1 ? Integer.parseInt(args[1]) : 2_000_000);
+            return;
+        }
+
+        // Run with "hosts [seconds]" to compare crawling slow, fast and failing hosts with and
+        // without per-host scheduling
+        if (args.length > 0 && args[0].equals("hosts")) {
+            benchmarkHosts(args.length > 1 ? Integer.parseInt(args[1]) : 10);
+            return;
+        }
+
         // Start URL for crawling
         String startUrl = "https://quotes.toscrape.com/";
 
         // Create and start the web crawler
         MultithreadedWebCrawler crawler = new MultithreadedWebCrawler(startUrl);
+        crawler.setMaxDepth(2);
+        crawler.setMaxPages(100);
+        crawler.setHostDelay(Duration.ofMillis(250));
+        crawler.setMetricsFile("crawl_metrics.txt");
         crawler.startCrawling();
+        crawler.getMetrics().report().forEach(System.out::println);
     }
 }